@@ -11,6 +11,10 @@ public class AndroidLauncher extends AndroidApplication {
 	protected void onCreate (Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 		AndroidApplicationConfiguration config = new AndroidApplicationConfiguration();
-		initialize(new FishEscape(), config);
+		// Only the frames where something changed are drawn, to save the battery. Starting the
+		// activity with the continuous extra set draws every frame instead, like --continuous
+		// on the desktop
+		final boolean continuous = getIntent().getBooleanExtra("continuous", false);
+		initialize(new FishEscape(false, !continuous), config);
 	}
 }
@@ -0,0 +1,64 @@
+package com.mygdx.fish_escape;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * These benchmarks measure the moves of the fish and the enemies. A round ends after the fish has
+ * moved up 40 times or has been eaten, so the world is restarted whenever that happens to keep the
+ * moves doing real work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoveBenchmark {
+    private FishWorld world;
+
+    @Setup
+    public void setUp() {
+        world = new FishWorld(42);
+    }
+
+    @Benchmark
+    public int moveUp() {
+        if (world.isOver()) {
+            world.restart();
+        }
+        world.moveUp();
+        return world.getMovesLeft();
+    }
+
+    @Benchmark
+    public int moveLeft() {
+        if (world.isOver()) {
+            world.restart();
+        }
+        world.moveLeft();
+        return world.getFishX();
+    }
+
+    @Benchmark
+    public int moveRight() {
+        if (world.isOver()) {
+            world.restart();
+        }
+        world.moveRight();
+        return world.getFishX();
+    }
+
+    @Benchmark
+    public int moveEnemies() {
+        if (world.isOver()) {
+            world.restart();
+        }
+        world.moveEnemies();
+        return world.getEnemyX(0);
+    }
+}
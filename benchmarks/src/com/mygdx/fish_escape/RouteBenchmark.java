@@ -0,0 +1,52 @@
+package com.mygdx.fish_escape;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * These benchmarks measure the route solver. Moving up drops the row the fish left and solves the
+ * rows that came onto the map, a restart solves every row on the map from scratch, and a hint is
+ * worked out from wherever the fish is. The fish follows the hints, so the rounds go on.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RouteBenchmark {
+    private FishWorld world;
+
+    @Setup
+    public void setUp() {
+        world = new FishWorld(42);
+    }
+
+    @Benchmark
+    public int moveUp() {
+        if (world.isOver()) {
+            world.restart();
+        }
+        world.moveUp();
+        return world.getParTaps();
+    }
+
+    @Benchmark
+    public int restart() {
+        world.restart();
+        return world.getParTaps();
+    }
+
+    @Benchmark
+    public int hint() {
+        if (world.isOver()) {
+            world.restart();
+        }
+        world.tick(world.getHintInput());
+        return world.getHintX();
+    }
+}
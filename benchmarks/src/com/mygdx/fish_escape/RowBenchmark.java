@@ -0,0 +1,62 @@
+package com.mygdx.fish_escape;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * These benchmarks measure making the chunks of obstacles and crackers, filling the rows with
+ * them, and picking up the crackers in them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RowBenchmark {
+    private FishWorld world;
+    private final ChunkGenerator.Chunk chunk = new ChunkGenerator.Chunk();
+    private int index = 0;
+    private int row = 0;
+    private int cracker = 0;
+
+    @Setup
+    public void setUp() {
+        world = new FishWorld(42);
+    }
+
+    @Benchmark
+    public int createObstacles() {
+        world.createObstacles();
+        return world.getObstacleX(0);
+    }
+
+    @Benchmark
+    public int generateChunk() {
+        ChunkGenerator.generate(42, index++, chunk);
+        return chunk.obstacleX[0];
+    }
+
+    @Benchmark
+    public int recreateRow() {
+        world.recreateRow(row);
+        final int x = world.getObstacleX(row * 4);
+        row = (row + 1) % 6;
+        return x;
+    }
+
+    /*
+        The row is filled again before each pick up, so each pick up looks at fresh crackers.
+     */
+    @Benchmark
+    public int takeCrackers() {
+        world.recreateRow(0);
+        world.takeCrackers(world.getCrackerX(cracker), world.getCrackerY(cracker));
+        cracker = (cracker + 1) % 3;
+        return world.getPoints();
+    }
+}
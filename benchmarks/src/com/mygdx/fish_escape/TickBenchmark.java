@@ -0,0 +1,53 @@
+package com.mygdx.fish_escape;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures whole ticks of the game, with a scripted stream of taps. Most ticks only
+ * apply the input, every moveTime-th tick also moves the fish up and the enemies after it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TickBenchmark {
+    // How many ticks there are between taps, on average
+    @Param({"1", "20"})
+    public int tapInterval;
+    private final int numberOfInputs = 4096;
+    private int inputs[] = new int[numberOfInputs];
+    private int nextInput = 0;
+    private FishWorld world;
+
+    @Setup
+    public void setUp() {
+        final Random randomGenerator = new Random(42);
+        for (int i = 0; i < numberOfInputs; i++) {
+            if (randomGenerator.nextInt(tapInterval) == 0) {
+                inputs[i] = randomGenerator.nextBoolean() ? FishWorld.INPUT_LEFT : FishWorld.INPUT_RIGHT;
+            } else {
+                inputs[i] = FishWorld.INPUT_NONE;
+            }
+        }
+        world = new FishWorld(42);
+    }
+
+    @Benchmark
+    public int tick() {
+        if (world.isOver()) {
+            world.restart();
+        }
+        world.tick(inputs[nextInput]);
+        nextInput = (nextInput + 1) % numberOfInputs;
+        return world.getFishX();
+    }
+}
@@ -0,0 +1,47 @@
+package com.mygdx.fish_escape;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures how many steps of single games a VectorEnv runs per second on one
+ * thread, with random actions like a bot that's just started training.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VectorEnvBenchmark {
+    private static final int numberOfGames = 64;
+    private final int numberOfActions = 4096;
+    private int actions[][] = new int[numberOfActions][numberOfGames];
+    private int nextActions = 0;
+    private VectorEnv env;
+
+    @Setup
+    public void setUp() {
+        final Random randomGenerator = new Random(42);
+        for (int i = 0; i < numberOfActions; i++) {
+            for (int game = 0; game < numberOfGames; game++) {
+                actions[i][game] = randomGenerator.nextInt(3);
+            }
+        }
+        env = new VectorEnv(numberOfGames, 42);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(numberOfGames)
+    public float[] step() {
+        env.step(actions[nextActions]);
+        nextActions = (nextActions + 1) % numberOfActions;
+        return env.getRewards();
+    }
+}
@@ -0,0 +1,284 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.utils.ImmutableArray;
+
+/**
+ * This system moves the sharks towards the fish every time the fish moves up. Every few moves the
+ * sharks "jump", or move again, so that it's more difficult for the player. A shark that has
+ * fallen too far behind goes back to where it started.
+ *
+ * The sharks share a flow field, which tells every cell between the bottom of the screen and the
+ * fish which way a shark there should swim to reach the fish the fastest. It's only recomputed
+ * when the fish or the map has moved, so every shark costs a lookup no matter how many there are.
+ */
+class AISystem extends TimedSystem {
+    private final FishWorld world;
+    private final ComponentMapper<PositionComponent> positions =
+            ComponentMapper.getFor(PositionComponent.class);
+    private final ComponentMapper<DirectionComponent> directions =
+            ComponentMapper.getFor(DirectionComponent.class);
+    private final ComponentMapper<SharkComponent> sharkComponents =
+            ComponentMapper.getFor(SharkComponent.class);
+    private ImmutableArray<Entity> fish;
+    private ImmutableArray<Entity> sharks;
+    private final int jumpTime = 5;
+    private boolean jumped = false;
+    // The fish being chased, in cells of the screen
+    private int fishX;
+    private int fishY;
+    // Flow field data. The map is as wide as its chunks, which lets the divisions by the width be
+    // shifts.
+    private final int width = ChunkGenerator.WIDTH;
+    private final int lowestFlowRow = -2;
+    private final int flowCells;
+    private final char flowDirection[];
+    private final int flowDistance[];
+    private final int flowQueue[];
+    private final long flowRowBits[];
+    private int flowQueueEnd;
+    private boolean flowValid = false;
+    private int flowFishX;
+    private int flowFishY;
+    private int flowScroll;
+
+    /*
+        This constructor sizes the flow field to reach from below the screen up to the fish, which
+        always stays in the same row of the screen.
+     */
+    AISystem(final FishWorld world, final int priority) {
+        super(priority, PerfStats.MOVE_ENEMIES);
+        this.world    = world;
+        flowCells     = (world.getFishStartY() - lowestFlowRow + 1) * width;
+        flowDirection = new char[flowCells];
+        flowDistance  = new int[flowCells];
+        flowQueue     = new int[flowCells];
+        flowRowBits   = new long[flowCells / width];
+    }
+
+    @Override
+    public void addedToEngine(final Engine engine) {
+        fish   = engine.getEntitiesFor(FishWorld.FISH);
+        sharks = engine.getEntitiesFor(FishWorld.SHARKS);
+    }
+
+    /*
+        The sharks only move when the fish moves up.
+     */
+    @Override
+    public boolean checkProcessing() {
+        return super.checkProcessing() && world.isMovingUp();
+    }
+
+    @Override
+    void process() {
+        moveSharks();
+    }
+
+    /*
+        This function forgets the jumps and the map of the last round.
+     */
+    void reset() {
+        jumped    = false;
+        flowValid = false;
+    }
+
+    /*
+        This function returns whether the sharks already jumped at this many moves, to be saved
+        with the world.
+     */
+    boolean hasJumped() { return jumped; }
+
+    void setJumped(final boolean jumped) { this.jumped = jumped; }
+
+    /*
+        This function moves every shark once, and once more if it's time for them to jump.
+     */
+    void moveSharks() {
+        final PositionComponent fishPosition = positions.get(fish.first());
+        fishX = fishPosition.x;
+        fishY = fishPosition.y - world.getScroll();
+        updateFlowField();
+        moveSharks(false);
+        // Make the sharks move faster
+        final int moves = world.getMoves();
+        if (moves % jumpTime == 0 && !jumped) {
+            jumped = true;
+            moveSharks(true);
+        }
+        // Reset the jumped variable so they can jump more than once
+        if (moves % jumpTime != 0 && jumped) {
+            jumped = false;
+        }
+    }
+
+    /*
+        This function executes the best movement for every shark's position and notes whether it
+        got to its new cell by jumping. If a shark has fallen too far behind, it's reset.
+     */
+    private void moveSharks(final boolean jumping) {
+        final int halfScreenWidth = width / 2;
+        final int scroll = world.getScroll();
+        for (int i = 0; i < sharks.size(); i++) {
+            final Entity entity = sharks.get(i);
+            final PositionComponent position = positions.get(entity);
+            final DirectionComponent direction = directions.get(entity);
+            final int oldX = position.x;
+            final int oldY = position.y;
+            final int x = position.x;
+            final int y = position.y - scroll;
+            // Follow the flow field if the shark can reach the fish, or else swim towards it
+            final char flow = flowDirection(x, y);
+            if (flow == 'u') {
+                forward(position, direction);
+            } else if (flow == 'l') {
+                left(position, direction);
+            } else if (flow == 'r') {
+                right(position, direction);
+            } else if (y < fishY) {
+                forward(position, direction);
+            } else if ((x > fishX && x - fishX <= halfScreenWidth) || fishX - x > halfScreenWidth) {
+                left(position, direction);
+            } else if ((x < fishX && fishX - x <= halfScreenWidth) || x - fishX > halfScreenWidth) {
+                right(position, direction);
+            }
+            sharkComponents.get(entity).jumped =
+                    jumping && (position.x != oldX || position.y != oldY);
+            // If the shark has fallen too far behind, recreate it
+            if (position.y - scroll < -1) {
+                position.x = sharkComponents.get(entity).startX;
+                position.y = scroll - 1;
+            }
+        }
+    }
+
+    /*
+        This function moves a shark up. If it would hit an obstacle, it tries another direction.
+     */
+    private void forward(final PositionComponent position, final DirectionComponent direction) {
+        direction.direction = 'u';
+        if (!world.hitsObstacleOnMap(position.x, position.y + 1)) {
+            position.y++;
+        } else if (position.x > fishX) {
+            left(position, direction);
+        } else if (position.x < fishX) {
+            right(position, direction);
+        }
+    }
+
+    /*
+        This function moves a shark to the left, so long as there's nothing in the way.
+     */
+    private void left(final PositionComponent position, final DirectionComponent direction) {
+        direction.direction = 'l';
+        final int newX = (position.x + width - 1) % width;
+        if (!world.hitsObstacleOnMap(newX, position.y)) {
+            position.x = newX;
+        }
+    }
+
+    /*
+        This function moves a shark to the right, so long as there's nothing in the way.
+     */
+    private void right(final PositionComponent position, final DirectionComponent direction) {
+        direction.direction = 'r';
+        final int newX = (position.x + 1) % width;
+        if (!world.hitsObstacleOnMap(newX, position.y)) {
+            position.x = newX;
+        }
+    }
+
+    /*
+        This function searches outwards from the fish to fill the flow field. A shark can swim up,
+        left or right, so the search goes the opposite way, down, right and left, to find how far
+        every cell is from the fish. Then each cell notes which way gets a shark there one cell
+        closer. Swimming up is picked whenever it's as good as swimming sideways, because the
+        sharks fall behind as the map moves. Cells that have no way to the fish are left empty.
+     */
+    private void updateFlowField() {
+        final int scroll = world.getScroll();
+        if (flowValid && flowFishX == fishX && flowFishY == fishY && flowScroll == scroll) {
+            return;
+        }
+        flowValid  = true;
+        flowFishX  = fishX;
+        flowFishY  = fishY;
+        flowScroll = scroll;
+        for (int cell = 0; cell < flowCells; cell++) {
+            flowDirection[cell] = 0;
+            flowDistance[cell]  = Integer.MAX_VALUE;
+        }
+        // Copy the field's rows out of the occupancy grid once, instead of once per cell
+        for (int row = 0; row < flowRowBits.length; row++) {
+            flowRowBits[row] = world.obstacleRow(row + lowestFlowRow);
+        }
+        flowQueueEnd = 0;
+        // The fish's cell is where the search starts
+        visitFlowCell(fishX, fishY, 0);
+        for (int next = 0; next < flowQueueEnd; next++) {
+            final int x = flowQueue[next] % width;
+            final int y = flowQueue[next] / width + lowestFlowRow;
+            final int distance = flowDistance[flowQueue[next]] + 1;
+            // A shark below swims up into this cell
+            visitFlowCell(x, y - 1, distance);
+            // A shark to the right swims left into this cell, and the other way around
+            visitFlowCell((x + 1) % width, y, distance);
+            visitFlowCell((x + width - 1) % width, y, distance);
+        }
+        // Point every cell that was reached, other than the fish's, towards a closer cell
+        for (int next = 1; next < flowQueueEnd; next++) {
+            final int cell = flowQueue[next];
+            final int x = cell % width;
+            final int y = cell / width + lowestFlowRow;
+            final int leftX = (x + width - 1) % width;
+            final int closer = flowDistance[cell] - 1;
+            if (flowDistanceAt(x, y + 1) == closer) {
+                flowDirection[cell] = 'u';
+            } else if (flowDistanceAt(leftX, y) == closer) {
+                flowDirection[cell] = 'l';
+            } else {
+                flowDirection[cell] = 'r';
+            }
+        }
+    }
+
+    /*
+        This function adds a cell to the search, unless it's been reached already, it's off the
+        field or it's covered by an obstacle.
+     */
+    private void visitFlowCell(final int x, final int y, final int distance) {
+        final int cell = (y - lowestFlowRow) * width + x;
+        if (cell < 0 || cell >= flowCells || flowDistance[cell] != Integer.MAX_VALUE ||
+                (flowRowBits[y - lowestFlowRow] & (1L << x)) != 0) {
+            return;
+        }
+        flowDistance[cell] = distance;
+        flowQueue[flowQueueEnd++] = cell;
+    }
+
+    /*
+        This function looks up how far a cell is from the fish, or Integer.MAX_VALUE if the cell is
+        off the field or has no way to the fish.
+     */
+    private int flowDistanceAt(final int x, final int y) {
+        final int cell = (y - lowestFlowRow) * width + x;
+        if (y < lowestFlowRow || cell >= flowCells) {
+            return Integer.MAX_VALUE;
+        }
+        return flowDistance[cell];
+    }
+
+    /*
+        This function looks up which way a shark in a cell should swim. It's 0 when the cell is off
+        the field or has no way to the fish.
+     */
+    private char flowDirection(final int x, final int y) {
+        final int cell = (y - lowestFlowRow) * width + x;
+        if (y < lowestFlowRow || cell >= flowCells) {
+            return 0;
+        }
+        return flowDirection[cell];
+    }
+}
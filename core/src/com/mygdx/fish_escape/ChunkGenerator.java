@@ -0,0 +1,266 @@
+package com.mygdx.fish_escape;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class makes the rows of obstacles and crackers, one chunk per row. Every chunk comes out
+ * the same for the same seed and index no matter which thread makes it, so a game can be played
+ * back from its seed. A chunk is only kept if the fish can get through it: there has to be a
+ * column that's free in both rows the obstacles can cover. Nothing sticks out past the edge of
+ * the screen, and crackers that would be off the screen or inside an obstacle are left out.
+ *
+ * By default the world asks for a chunk when it needs one and it's made right then. Once started,
+ * a worker thread makes the chunks ahead of the world and passes them over through a lock-free
+ * queue, so neither making them nor retrying a blocked one happens on the render thread. If the
+ * worker ever falls behind, the world makes the chunk itself. The chunks are made once when the
+ * worker starts and passed back to it through a second queue after the world used them, so
+ * nothing is allocated while the game runs.
+ */
+public class ChunkGenerator implements Runnable {
+    public static final int WIDTH             = 8;
+    public static final int OBSTACLES_PER_ROW = 4;
+    public static final int CRACKERS_PER_ROW  = 3;
+    private static final long fullRow = (1L << WIDTH) - 1;
+    private static final long golden = 0x9E3779B97F4A7C15L;
+    // How many chunks the worker makes ahead of the world
+    private final int lookahead = 16;
+    private final long seed;
+    // The chunks the worker made, and the chunks the world is done with
+    private final RingQueue<Chunk> ready = new RingQueue<Chunk>(lookahead * 2);
+    private final RingQueue<Chunk> free  = new RingQueue<Chunk>(lookahead * 2);
+    private Chunk pool[];
+    // The chunk from the worker that the world is using
+    private Chunk taken;
+    // The next index the worker or the world will make, and the next index the world will take
+    private final AtomicInteger claimed = new AtomicInteger();
+    private volatile int needed = 0;
+    private volatile boolean running = false;
+    private Thread worker;
+    // The chunk the world makes itself, which it reuses
+    private final Chunk inlineChunk = new Chunk();
+    private long inlineChunks = 0;
+
+    /*
+        This class is one row of obstacles and crackers.
+     */
+    public static class Chunk {
+        int index;
+        final int obstacleX[]         = new int[OBSTACLES_PER_ROW];
+        final int obstacleWidth[]     = new int[OBSTACLES_PER_ROW];
+        final int obstacleHeight[]    = new int[OBSTACLES_PER_ROW];
+        final int crackerX[]          = new int[CRACKERS_PER_ROW];
+        final boolean crackerHidden[] = new boolean[CRACKERS_PER_ROW];
+        // How many times the row came out blocked before this one
+        int retries;
+        private long random;
+    }
+
+    public ChunkGenerator(final long seed) {
+        this.seed = seed;
+    }
+
+    /*
+        This function starts making the chunks ahead on a worker thread. It doesn't start again
+        while a worker that was stopped is still finishing, since that worker may still put chunks
+        in the queue.
+     */
+    public void start() {
+        if (worker != null) {
+            if (running || worker.isAlive()) {
+                return;
+            }
+            dropWorker();
+        }
+        if (pool == null) {
+            pool = new Chunk[lookahead + 1];
+            for (int i = 0; i < pool.length; i++) {
+                pool[i] = new Chunk();
+            }
+        }
+        for (Chunk chunk : pool) {
+            free.offer(chunk);
+        }
+        running = true;
+        worker = new Thread(this, "ChunkGenerator");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /*
+        This function stops the worker. The chunks are made when they're needed again. If the
+        worker doesn't finish in time, its queues are kept, since only the world may take from them
+        while the worker can still add to them, and the chunks it already made are still used.
+     */
+    public void stop() {
+        if (worker == null || !running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!worker.isAlive()) {
+            dropWorker();
+        }
+    }
+
+    /*
+        This function forgets the worker once it's finished, and has the next worker start making
+        chunks from the one the world needs, not from where the last worker got to.
+     */
+    private void dropWorker() {
+        worker = null;
+        ready.clear();
+        free.clear();
+        taken = null;
+        claimed.set(needed);
+    }
+
+    /*
+        This function returns the next chunk. It's only good until the next call.
+     */
+    public Chunk next() {
+        final int index = needed;
+        Chunk chunk = null;
+        if (worker != null) {
+            if (taken != null) {
+                free.offer(taken);
+                taken = null;
+            }
+            // Give back the chunks that were made after the world made them itself
+            while ((chunk = ready.peek()) != null && chunk.index < index) {
+                free.offer(ready.poll());
+            }
+            chunk = chunk != null && chunk.index == index ? ready.poll() : null;
+            taken = chunk;
+        }
+        if (chunk == null) {
+            chunk = inlineChunk;
+            generate(seed, index, chunk);
+            inlineChunks++;
+            // Keep the worker from making this one again
+            int next;
+            while ((next = claimed.get()) <= index && !claimed.compareAndSet(next, index + 1)) {
+                // Try again
+            }
+        }
+        needed = index + 1;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        }
+        return chunk;
+    }
+
+    /*
+        This function returns the index of the chunk the next call to next returns.
+     */
+    int getNextIndex() { return needed; }
+
+    /*
+        This function has the chunks go on from the index, like when a saved game is loaded. The
+        worker can't be running.
+     */
+    void skipTo(final int index) {
+        if (worker != null) {
+            if (running || worker.isAlive()) {
+                throw new IllegalStateException("Can't skip chunks while the worker is running");
+            }
+            dropWorker();
+        }
+        needed = index;
+        claimed.set(index);
+    }
+
+    public long getSeed() { return seed; }
+
+    /*
+        This function returns how many chunks the world had to make itself.
+     */
+    public long getInlineChunks() { return inlineChunks; }
+
+    /*
+        This function runs on the worker thread, making chunks until it's lookahead chunks ahead of
+        the world and then waiting for the world to take some and give them back.
+     */
+    @Override
+    public void run() {
+        Chunk chunk = null;
+        while (running) {
+            if (chunk == null) {
+                chunk = free.poll();
+            }
+            final int index = claimed.get();
+            if (chunk == null || index - needed >= lookahead) {
+                LockSupport.park(this);
+            } else if (claimed.compareAndSet(index, index + 1)) {
+                generate(seed, index, chunk);
+                ready.offer(chunk);
+                chunk = null;
+            }
+        }
+    }
+
+    /*
+        This function makes the chunk with the index, trying again until the fish can get through.
+        The obstacles are placed left to right with a random gap of 0 to 3 cells before each, and
+        are 1 or 2 cells wide and high. The crackers are placed left to right with a gap of 1 to 4.
+     */
+    static void generate(final long seed, final int index, final Chunk chunk) {
+        chunk.index   = index;
+        chunk.retries = 0;
+        // Every chunk starts somewhere unrelated in the sequence, so neighbouring chunks differ
+        chunk.random  = mix(seed + index * golden);
+        long bottom;
+        long top;
+        while (true) {
+            bottom = 0;
+            top    = 0;
+            int end = 0;
+            for (int i = 0; i < OBSTACLES_PER_ROW; i++) {
+                final int x = end + nextInt(chunk, 4);
+                int width = nextInt(chunk, 2) + 1;
+                final int height = nextInt(chunk, 2) + 1;
+                // Cut off what sticks out past the edge, and leave out what's past it
+                width = Math.max(0, Math.min(width, WIDTH - x));
+                chunk.obstacleX[i]      = x;
+                chunk.obstacleWidth[i]  = width;
+                chunk.obstacleHeight[i] = height;
+                final long bits = ((1L << width) - 1) << Math.min(x, WIDTH);
+                bottom |= bits;
+                if (height > 1) {
+                    top |= bits;
+                }
+                end = x + width;
+            }
+            // The rows around the chunk are always free, so a column free in both rows gets through
+            if ((~bottom & ~top & fullRow) != 0) {
+                break;
+            }
+            chunk.retries++;
+        }
+        int x = 0;
+        for (int i = 0; i < CRACKERS_PER_ROW; i++) {
+            x += nextInt(chunk, 4) + 1;
+            chunk.crackerX[i]      = x;
+            chunk.crackerHidden[i] = x >= WIDTH || (bottom & (1L << x)) != 0;
+        }
+    }
+
+    /*
+        This function returns a random number from 0 to bound - 1, from the chunk's own SplitMix64
+        sequence, so chunks can be made in any order.
+     */
+    private static int nextInt(final Chunk chunk, final int bound) {
+        return (int) ((mix(chunk.random += golden) >>> 33) % bound);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
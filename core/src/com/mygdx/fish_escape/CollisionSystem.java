@@ -0,0 +1,65 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.utils.ImmutableArray;
+
+/**
+ * This system checks if a shark has eaten the fish, and notes how it happened. The sharks only bite
+ * when they move, which is when the fish moves up, so the fish can slip past a shark in between.
+ * A shark that reaches the fish can't move off of it again, so checking once after all of the
+ * sharks moved finds every shark that got there.
+ */
+class CollisionSystem extends TimedSystem {
+    private final FishWorld world;
+    private final ComponentMapper<PositionComponent> positions =
+            ComponentMapper.getFor(PositionComponent.class);
+    private final ComponentMapper<SharkComponent> sharkComponents =
+            ComponentMapper.getFor(SharkComponent.class);
+    private ImmutableArray<Entity> fish;
+    private ImmutableArray<Entity> sharks;
+
+    CollisionSystem(final FishWorld world, final int priority) {
+        super(priority, PerfStats.COLLISION_SYSTEM);
+        this.world = world;
+    }
+
+    @Override
+    public void addedToEngine(final Engine engine) {
+        fish   = engine.getEntitiesFor(FishWorld.FISH);
+        sharks = engine.getEntitiesFor(FishWorld.SHARKS);
+    }
+
+    @Override
+    public boolean checkProcessing() {
+        return super.checkProcessing() && world.isMovingUp();
+    }
+
+    /*
+        The fish counts as eaten by a jump only if every shark that got it jumped there, since the
+        sharks that didn't jump got there first.
+     */
+    @Override
+    void process() {
+        for (int i = 0; i < fish.size(); i++) {
+            final PositionComponent fishPosition = positions.get(fish.get(i));
+            int deathCause = FishWorld.DEATH_NONE;
+            for (int j = 0; j < sharks.size(); j++) {
+                final Entity shark = sharks.get(j);
+                final PositionComponent position = positions.get(shark);
+                if (position.x != fishPosition.x || position.y != fishPosition.y) {
+                    continue;
+                }
+                if (!sharkComponents.get(shark).jumped) {
+                    deathCause = world.isBlocked() ? FishWorld.DEATH_BLOCKED : FishWorld.DEATH_SHARK;
+                    break;
+                }
+                deathCause = FishWorld.DEATH_SHARK_JUMP;
+            }
+            if (deathCause != FishWorld.DEATH_NONE) {
+                world.eat(deathCause);
+            }
+        }
+    }
+}
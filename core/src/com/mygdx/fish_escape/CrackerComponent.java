@@ -0,0 +1,11 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.ashley.core.Component;
+
+/**
+ * This component marks a cracker the fish can pick up. Crackers that were taken, or that never fit
+ * on the screen, stay where they are but aren't picked up or drawn.
+ */
+public class CrackerComponent implements Component {
+    boolean taken;
+}
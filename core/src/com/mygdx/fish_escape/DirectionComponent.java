@@ -0,0 +1,10 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.ashley.core.Component;
+
+/**
+ * This component is the way a fish last swam: 'u' for up, 'l' for left and 'r' for right.
+ */
+public class DirectionComponent implements Component {
+    char direction = 'u';
+}
@@ -0,0 +1,10 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.ashley.core.Component;
+
+/**
+ * This component marks the player's fish, and holds what the player asked it to do this tick.
+ */
+public class FishComponent implements Component {
+    int input = FishWorld.INPUT_NONE;
+}
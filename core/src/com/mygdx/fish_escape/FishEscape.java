@@ -2,20 +2,31 @@ package com.mygdx.fish_escape;
 
 import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.GlyphLayout;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
-import com.badlogic.gdx.math.Intersector;
-import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.ui.ImageButton;
 import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
 import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.badlogic.gdx.utils.Timer;
+import com.badlogic.gdx.utils.viewport.ScreenViewport;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Random;
 
 /**
@@ -23,99 +34,243 @@ import java.util.Random;
  * without getting eaten. There will be several enemies who will try to eat the player. There will
  * also be obstacles that the player will need to navigate in order to obtain the finish line. The
  * obstacles are random, providing the user with a unique experience each game. Their high score
- * also be saved.
+ * also be saved. The game itself is simulated by FishWorld, this class draws it and handles the
+ * buttons.
  */
 public class FishEscape extends ApplicationAdapter {
 	private SpriteBatch batch;
-    // Stage is used for actors, like buttons
+    // Stage is used for actors, like buttons. Both stages are created once and kept for every round.
     private Stage stage;
     private Stage restartStage;
-	private Texture background;
-	private Random randomGenerator;
-	private ShapeRenderer shapeRenderer;
+    private ImageButton restartButton;
+    private TextureRegionDrawable loseGameDrawable;
+    private TextureRegionDrawable winGameDrawable;
+    // The assets are loaded in the background while the first frames are drawn
+    private AssetManager assets;
+    private boolean loaded = false;
+    private final String atlasFile      = "sprites.atlas";
+    // The background and the end screens are compressed into ETC1 by the build, a texture each
+    private final String texturesFile   = "textures.atlas";
+    private final String fontFile       = "arial-15.fnt";
+	private TextureRegion background;
+	// A white pixel, tinted to draw solid rectangles with the batch
+	private TextureRegion solidRegion;
+	// How many times the batch was flushed to the GPU in the last frame
+	private int renderCalls;
+	// The game being drawn
+	private FishWorld world;
+	// Every session is recorded, and the last few recordings are kept
+	private ReplayRecorder replay;
+	private String replayName;
+	private final String replayDirectory = "replays";
+	private final int maxReplays = 10;
+	// The high score and the rounds played are saved in the background
+	private ScoreStore scores;
+	private final String scoreDirectory = "scores";
+	// The round is saved when the game goes into the background, in case it's killed there
+	private GameSnapshot savedGame;
+	private final String savedGameFile = "game.snapshot";
+	// The game runs at a fixed number of ticks per second, no matter how fast the frames are drawn.
+	// The time that's left over after the last tick is how far to draw between two ticks.
+	private final float tickLength = 1 / 60f;
+	private final float maxFrameTime = .25f;
+	private float accumulator = 0;
+	private float alpha = 0;
+	// The taps wait here until the next tick, which takes one of them. When the taps that were
+	// used this frame were made is kept, to measure how long they took to show up.
+	private final int maxQueuedInputs = 3;
+	private final InputQueue inputs = new InputQueue(maxQueuedInputs);
+	private final long shownInputTimes[] = new long[maxQueuedInputs];
+	private int shownInputs = 0;
     // General game data
     private float cellHeight;
     private float cellWidth;
-    private final int numberOfVerticalCells = 14;
-    private final int numberOfHorizontalCells = 8;
-    private final int goal = 40;
-    private int movesLeft = goal;
     private BitmapFont gameFont;
-    private Texture loseGame;
-    private Texture winGame;
-    private int highScore;
-    private int moves = 0;
-    private int points = 0;
-    private int moveTime = 60;
-    private int frames = 0;
-    private int level = 1;
+    private TextureRegion loseGame;
+    private TextureRegion winGame;
+    // ETC1 has no alpha, so the end screens have it in textures of their own, put together with
+    // the colors by a shader while the restart button is drawn
+    private Texture loseGameAlpha;
+    private Texture winGameAlpha;
+    private Texture restartAlpha;
+    private ShaderProgram alphaShader;
+    private boolean gameEnded = false;
     private BitmapFont finishLineFont;
     private BitmapFont highScoreFont;
-    // Main fish data
-	private Texture upFish;
-	private Texture leftFish;
-	private Texture rightFish;
-    private char fishDirection;
-    private final int startYLocation = 5;
-    private final int startXLocation = 3;
-    private float fishX;
-	private float fishY;
-	private Rectangle fishCell;
-	private boolean eaten = false;
-	// Enemy fish data
-    private final int numberOfEnemies = 4;
-    private Texture enemyTextures[] = new Texture[numberOfEnemies];
-    private Rectangle enemies[]     = new Rectangle[numberOfEnemies];
-    private final int enemyStartX[] = new int[numberOfEnemies];
-    private Texture enemyLeftTexture;
-    private Texture enemyRightTexture;
-    private Texture enemyUpTexture;
-    private boolean jumped = false;
-    // Obstacle data
-    private final int numberOfObstacles = 24;
-    private final int obstaclesPerRow   = 4;
-    private final int obstacleYGap      = 3;
-    private Rectangle obstacles[]  = new Rectangle[numberOfObstacles];
-    private float obstacleX[]      = new float[numberOfObstacles];
-    private float obstacleY[]      = new float[numberOfObstacles];
-    private float obstacleWidth[]  = new float[numberOfObstacles];
-    private float obstacleHeight[] = new float[numberOfObstacles];
-    private int furthestObstacle = numberOfObstacles - 1;
-    // Cracker data
-    private final int numberOfCrackers = 18;
-    private final int crackersPerRow   = 3;
-    private final int crackerYGap      = 3;
-    private Texture crackerTexture;
-    private Rectangle crackers[]   = new Rectangle[numberOfCrackers];
-    private float crackerX[]       = new float[numberOfCrackers];
-    private float crackerY[]       = new float[numberOfCrackers];
-    private boolean crackerTaken[] = new boolean[numberOfCrackers];
-
-    /*
-        This function initializes all of the elements used in several functions in the game.
+    // The text is laid out again only when the number in it changes, instead of every frame
+    private final GlyphLayout scoreLayout     = new GlyphLayout();
+    private final GlyphLayout highScoreLayout = new GlyphLayout();
+    private final GlyphLayout levelLayout     = new GlyphLayout();
+    private final GlyphLayout restartLayout   = new GlyphLayout();
+    private final GlyphLayout parLayout       = new GlyphLayout();
+    private final StringBuilder hudText       = new StringBuilder();
+    private int shownPoints    = -1;
+    private int shownHighScore = -1;
+    private int shownLevel     = -1;
+    private int shownPar       = -2;
+    private boolean shownParFinal;
+    // The cell the fish should swim to next is marked faintly
+    private final float hintAlpha = .3f;
+    // How long each part of a frame takes, shown on the screen and saved when instrumented
+    private final PerfStats perf;
+    private GLProfiler profiler;
+    private final GlyphLayout perfLayout = new GlyphLayout();
+    private final String perfDirectory   = "perf";
+    private String perfFile;
+    private final int perfOverlayFrames  = 60;
+    private int perfFrames = 0;
+    private long lastFrameStart = 0;
+    // Draws the fish, the sharks and the crackers
+    private RenderSystem renderSystem;
+    // When the game renders on demand, a frame is only drawn when the screen changes: after a tap,
+    // on the tick the fish moves up, and until the next tick while something is drawn moving.
+    // nextFrameTime is when the next frame is wanted, 0 for right away and Long.MAX_VALUE for the
+    // next tap. The longest wait since the last frame is added to how long a frame can take, and
+    // the time spent waiting for a tap isn't played at all.
+    private final boolean renderOnDemand;
+    private long nextFrameTime = 0;
+    private float frameWait = 0;
+    private boolean waitedForTap = false;
+    private Timer.Task frameTask;
+    // The frames drawn since the start of the minute, when measured
+    private final long minute = 60000000000L;
+    private long minuteStart = 0;
+    private int minuteFrames = 0;
+    // When racing, the course comes from the race server and every tap is sent to it with the
+    // tick it's played on. The round is played here and on the server the same way, and the
+    // server's copy of it decides the places. race is null when playing alone. The round here is
+    // captured every tick for a while, to check it against the server's snapshots.
+    private final InetSocketAddress raceServer;
+    private RaceClient race;
+    private final long joinTimeout    = 2000;
+    private final long joinResendTime = 100;
+    private long joinDeadline = 0;
+    private long joinSent     = 0;
+    private final int raceHistoryLength = 128;
+    private RaceSnapshot raceHistory[];
+    private int checkedSequence = 0;
+    private final GlyphLayout raceLayout = new GlyphLayout();
+    private int shownPlace  = -1;
+    private int shownRacers = -1;
+
+    public FishEscape() {
+        this(false);
+    }
+
+    public FishEscape(final boolean instrumented) {
+        this(instrumented, false);
+    }
+
+    /*
+        This constructor creates the game, measuring it if it's instrumented and drawing a frame
+        only when something changed if it renders on demand. Otherwise every frame is drawn, which
+        is what a backend that can't wait for a frame to be asked for needs, so the launchers that
+        can opt in.
+     */
+    public FishEscape(final boolean instrumented, final boolean renderOnDemand) {
+        this(instrumented, renderOnDemand, null);
+    }
+
+    /*
+        This constructor creates a game that races the other players on the race server, or plays
+        alone if there's none. A race draws every frame, since the server's snapshots come in
+        between them.
+     */
+    public FishEscape(final boolean instrumented, final boolean renderOnDemand,
+                      final InetSocketAddress raceServer) {
+        perf = new PerfStats(instrumented);
+        this.renderOnDemand = renderOnDemand && raceServer == null;
+        this.raceServer     = raceServer;
+    }
+
+    /*
+        This function starts loading the assets and creates the game, going on with the round that
+        was saved if the game was killed in the background. Nothing waits for the assets here,
+        they finish loading over the first frames.
      */
 	@Override
 	public void create () {
-		batch             = new SpriteBatch();
-		shapeRenderer     = new ShapeRenderer();
-		background        = new Texture("ocean02.png");
-		upFish            = new Texture("clownfish_up.png");
-		leftFish          = new Texture("clownfish_left.png");
-		rightFish         = new Texture("clownfish_right.png");
-		loseGame          = new Texture("lose_game.png");
-		winGame           = new Texture("win_game.png");
-		enemyUpTexture    = new Texture("shark_up.png");
-		enemyLeftTexture  = new Texture("shark_left.png");
-		enemyRightTexture = new Texture("shark_right.png");
-		crackerTexture    = new Texture("coin.png");
-        randomGenerator   = new Random();
+		Gdx.graphics.setContinuousRendering(!renderOnDemand);
+        // A task can only be made once the app is running
+        frameTask = new Timer.Task() {
+            @Override
+            public void run() {
+                Gdx.graphics.requestRendering();
+            }
+        };
+		batch = new SpriteBatch();
+        savedGame = new GameSnapshot(Gdx.files.local(savedGameFile).file());
+        // A saved round is played alone, so a race starts a new one
+        if (raceServer == null) {
+            world = loadGame();
+        }
+        if (world == null) {
+            final long seed = new Random().nextLong();
+            world = new FishWorld(seed);
+            // A race's round is only recorded once the server says which course it's on
+            if (raceServer == null) {
+                startReplay(seed);
+            } else {
+                joinRace();
+            }
+        }
+        gameEnded = world.isOver();
+        world.setPerfStats(perf);
+        // Make the rows ahead of time, so they're never made during a frame
+        world.generateInBackground(true);
+        if (perf.isEnabled()) {
+            // The headless backend has no GL to profile, so the batch counts the draw calls there
+            if (Gdx.graphics.getGL20() != null) {
+                profiler = new GLProfiler(Gdx.graphics);
+                profiler.enable();
+            }
+            perfFile = perfDirectory + "/" + TimeUtils.millis();
+        }
+        scores = new ScoreStore(Gdx.files.local(scoreDirectory).file());
+        world.setHighScore(Math.max(world.getHighScore(), scores.getHighScore()));
         // Create cell dimensions
-        cellWidth  = Gdx.graphics.getWidth()  / numberOfHorizontalCells;
-        cellHeight = Gdx.graphics.getHeight() / numberOfVerticalCells;
-        // Initialize all of the game text
-        gameFont       = new BitmapFont();
-        highScoreFont  = new BitmapFont();
-        finishLineFont = new BitmapFont();
+        cellWidth  = Gdx.graphics.getWidth()  / world.getNumberOfHorizontalCells();
+        cellHeight = Gdx.graphics.getHeight() / world.getNumberOfVerticalCells();
+        // Queue all of the assets. The sprites and the font are packed into one atlas.
+        assets = new AssetManager();
+        // If the GL context is lost, the textures are reloaded by the manager over the next frames
+        // instead of all at once on the render thread
+        Texture.setAssetManager(assets);
+        assets.load(atlasFile, TextureAtlas.class);
+        assets.load(texturesFile, TextureAtlas.class);
+	}
+
+    /*
+        This function initializes all of the elements used in several functions in the game, once
+        the assets have been loaded.
+     */
+    private void createGame() {
+        final TextureAtlas atlas = assets.get(atlasFile, TextureAtlas.class);
+        final TextureAtlas textures = assets.get(texturesFile, TextureAtlas.class);
+		background        = textures.findRegion("ocean02");
+		loseGame          = textures.findRegion("lose_game");
+		winGame           = textures.findRegion("win_game");
+		loseGameAlpha     = textures.findRegion("lose_game_alpha").getTexture();
+		winGameAlpha      = textures.findRegion("win_game_alpha").getTexture();
+		alphaShader       = createAlphaShader();
+		solidRegion       = atlas.findRegion("white");
+        // Draw the crackers, then the fish and then the sharks on top
+        final TextureRegion crackerTexture = atlas.findRegion("coin");
+        renderSystem = new RenderSystem(batch, world, cellWidth, cellHeight, perf);
+        renderSystem.addSprite(FishWorld.CRACKERS,
+                crackerTexture, crackerTexture, crackerTexture, PerfStats.DRAW_COINS);
+        renderSystem.addSprite(FishWorld.FISH, atlas.findRegion("clownfish_up"),
+                atlas.findRegion("clownfish_left"), atlas.findRegion("clownfish_right"),
+                PerfStats.DRAW_FISH);
+        renderSystem.addSprite(FishWorld.SHARKS, atlas.findRegion("shark_up"),
+                atlas.findRegion("shark_left"), atlas.findRegion("shark_right"),
+                PerfStats.DRAW_ENEMIES);
+        world.getEngine().addSystem(renderSystem);
+        // Initialize all of the game text, drawn from the font in the atlas
+        final TextureRegion fontRegion = atlas.findRegion("arial-15");
+        gameFont       = new BitmapFont(Gdx.files.internal(fontFile), fontRegion);
+        highScoreFont  = new BitmapFont(Gdx.files.internal(fontFile), fontRegion);
+        finishLineFont = new BitmapFont(Gdx.files.internal(fontFile), fontRegion);
         int gameFontSize       = 2;
         int highScoreFontSize  = 1;
         int finishLineFontSize = 3;
@@ -125,45 +280,210 @@ public class FishEscape extends ApplicationAdapter {
         gameFont.getData().scale(gameFontSize);
         highScoreFont.getData().scale(highScoreFontSize);
         finishLineFont.getData().scale(finishLineFontSize);
-        // Initialize the beginning highscore and fish position
-        highScore = 0;
-        fishX = cellWidth  * startXLocation;
-        fishY = cellHeight * startYLocation;
-        // Create all of the buttons and add them to the stage
-        stage = new Stage();
-        stage.addActor(createArrowButton("left_arrow.png"));
-        stage.addActor(createArrowButton("right_arrow.png"));
+        restartLayout.setText(gameFont, "Tap the shark to restart");
+        // Create all of the buttons and add them to the stages. The roots are never moved, so
+        // they don't need to set the batch's transform, which would flush it twice a frame.
+        stage = new Stage(new ScreenViewport(), batch);
+        stage.getRoot().setTransform(false);
+        stage.addActor(createArrowButton("left_arrow"));
+        stage.addActor(createArrowButton("right_arrow"));
+        restartStage = new Stage(new ScreenViewport(), batch);
+        restartStage.getRoot().setTransform(false);
+        restartStage.addActor(createRestartButton());
         Gdx.input.setInputProcessor(stage);
-        // Create all of the objects in the game
-        createFish();
-        createEnemies();
-        createCrackers();
-        createObstacles();
-	}
+        if (gameEnded) {
+            showRestartButton();
+        }
+        loaded = true;
+    }
 
 	/*
-	    This function draws all of the elements in the game, mainly via other functions.
+	    This function advances the game by however many ticks fit into the time since the last frame
+	    and then draws all of the elements in the game, mainly via other functions. Everything,
+	    including the buttons on the stages, is drawn in a single batch so the frame is only sent
+	    to the GPU once per texture.
 	 */
 	@Override
 	public void render () {
+        // Keep loading the assets without blocking the frame
+        if (!loaded) {
+            Gdx.gl.glClearColor(0, 0, 0, 1);
+            Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+            if (!assets.update()) {
+                requestFrame(0);
+                return;
+            }
+            createGame();
+        } else if (!assets.update()) {
+            // The textures are still coming back after the GL context was lost
+            Gdx.gl.glClearColor(0, 0, 0, 1);
+            Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+            requestFrame(0);
+            return;
+        }
+        final long frameStart = perf.start();
+        if (lastFrameStart != 0) {
+            perf.record(PerfStats.FRAME_INTERVAL, frameStart - lastFrameStart);
+        }
+        lastFrameStart = frameStart;
+        updateRace();
+        updateWorld();
+        batch.begin();
+        long start = perf.start();
 		drawBackground();
-        drawCoins();
-        drawFish();
-        drawEnemies();
+        start = perf.lap(PerfStats.DRAW_BACKGROUND, start);
+        start = renderSystem.draw(alpha, start);
         drawObstacles();
+        drawHint();
+        start = perf.lap(PerfStats.DRAW_OBSTACLES, start);
         drawFinishLine();
+        start = perf.lap(PerfStats.DRAW_FINISH_LINE, start);
         drawScore();
+        start = perf.lap(PerfStats.DRAW_SCORE, start);
         // Draw the end screen
-        if (eaten || movesLeft <= 0) {
-            restartStage.draw();
+        if (gameEnded) {
+            drawRestartButton();
             drawEndScreen();
+            start = perf.lap(PerfStats.DRAW_END_SCREEN, start);
+        }
+        stage.getRoot().draw(batch, 1);
+        perf.stop(PerfStats.DRAW_BUTTONS, start);
+        if (perf.isEnabled()) {
+            drawPerfOverlay();
         }
-        stage.draw();
-        if (frames % moveTime == 0) {
-            moveUp();
+        batch.end();
+        renderCalls = batch.renderCalls;
+        // The taps used this frame have now been drawn
+        for (int i = 0; i < shownInputs; i++) {
+            perf.record(PerfStats.INPUT_LATENCY, TimeUtils.nanoTime() - shownInputTimes[i]);
+        }
+        shownInputs = 0;
+        if (perf.isEnabled()) {
+            perf.stop(PerfStats.FRAME, frameStart);
+            if (profiler != null) {
+                perf.record(PerfStats.DRAW_CALLS, profiler.getDrawCalls());
+                perf.record(PerfStats.TEXTURE_BINDS, profiler.getTextureBindings());
+                profiler.reset();
+            } else {
+                perf.record(PerfStats.DRAW_CALLS, renderCalls);
+            }
+            perf.recordGarbageCollection();
+            countFrame();
+        }
+        requestNextFrame();
+    }
+
+    /*
+        This function asks for the next frame once this one is drawn. Right away if a tap is
+        waiting for its tick or something is drawn moving, at the next tick the fish moves up in
+        while the round goes on, or else at the next tap.
+     */
+    private void requestNextFrame() {
+        if (!inputs.isEmpty() || renderSystem.isMoving()) {
+            requestFrame(0);
+        } else if (gameEnded) {
+            requestFrame(Float.POSITIVE_INFINITY);
+        } else {
+            final int moveTime = world.getMoveTime();
+            final int ticks = (moveTime - world.getFrames() % moveTime) % moveTime + 1;
+            requestFrame(ticks * tickLength - accumulator);
+        }
+    }
+
+    /*
+        This function has the next frame drawn after a number of seconds, or at the next tap if
+        it's infinite. Taps draw a frame anyway, so waiting for one needs nothing.
+     */
+    private void requestFrame(final float wait) {
+        if (!renderOnDemand) {
+            return;
+        }
+        frameTask.cancel();
+        if (wait <= 0) {
+            nextFrameTime = 0;
+            Gdx.graphics.requestRendering();
+        } else if (wait == Float.POSITIVE_INFINITY) {
+            nextFrameTime = Long.MAX_VALUE;
+            waitedForTap  = true;
+        } else {
+            nextFrameTime = TimeUtils.nanoTime() + (long) (wait * 1e9);
+            frameWait     = Math.max(frameWait, wait);
+            Timer.schedule(frameTask, wait);
+        }
+    }
+
+    /*
+        This function counts the frame, and records how many were drawn per minute once a minute
+        has passed. Frames drawn on demand can be far apart, so the minute can be a bit longer.
+     */
+    private void countFrame() {
+        final long now = TimeUtils.nanoTime();
+        minuteFrames++;
+        if (minuteStart == 0) {
+            minuteStart = now;
+        } else if (now - minuteStart >= minute) {
+            perf.record(PerfStats.FRAMES_PER_MINUTE, minuteFrames * minute / (now - minuteStart));
+            minuteStart  = now;
+            minuteFrames = 0;
+        }
+    }
+
+    /*
+        This function runs zero or more ticks of the game, depending on how much time has passed.
+        A long frame, like after the app was in the background, only counts for a quarter of a
+        second more than the game waited for it, so the game doesn't have to catch up all at once.
+        The first frame after waiting for a tap doesn't count at all, since nothing was going on.
+     */
+    private void updateWorld() {
+        if (isWaitingForRace()) {
+            // The round starts when the race does
+            accumulator = 0;
+            alpha       = 0;
+            return;
+        }
+        if (!waitedForTap) {
+            accumulator += Math.min(Gdx.graphics.getDeltaTime(), maxFrameTime + frameWait);
+        }
+        frameWait    = 0;
+        waitedForTap = false;
+        while (accumulator >= tickLength) {
+            world.tick(nextInput());
+            if (race != null) {
+                raceHistory[world.getFrames() % raceHistoryLength].capture(world, 0, 0);
+            }
+            accumulator -= tickLength;
+        }
+        // If the fish was eaten or hit the finish line, save the round and show the restart button
+        if (world.isOver() && !gameEnded) {
+            gameEnded = true;
+            inputs.clear();
+            scores.record(world.getLevel(), world.getPoints(), world.getMoves(), world.isEaten());
+            showRestartButton();
+        }
+        alpha = accumulator / tickLength;
+    }
+
+    /*
+        This function takes the oldest tap for the next tick and records it in the replay.
+     */
+    private int nextInput() {
+        if (inputs.isEmpty()) {
+            return FishWorld.INPUT_NONE;
         }
-        frames++;
+        final int input = inputs.peekInput();
+        shownInputTimes[shownInputs++] = inputs.peekTime();
+        inputs.remove();
+        recordReplay(input == FishWorld.INPUT_LEFT ?
+                ReplayRecorder.EVENT_LEFT : ReplayRecorder.EVENT_RIGHT);
+        return input;
+    }
 
+    /*
+        This function finds how far above their cells the rows should be drawn, because the map is
+        still scrolling down from the last tick.
+     */
+    private float scrollOffset() {
+        return (world.getScroll() - world.getPreviousScroll()) * (1 - alpha);
     }
 
     /*
@@ -172,9 +492,9 @@ public class FishEscape extends ApplicationAdapter {
         implementation of the button.
      */
     private ImageButton createArrowButton (final String image) {
-        // Make the Texture whatever image has been passed
-        final Texture texture                             = new Texture(image);
-        final TextureRegion textureRegion                 = new TextureRegion(texture);
+        // Make the button's image whatever region of the atlas has been passed
+        final TextureRegion textureRegion                 =
+                assets.get(atlasFile, TextureAtlas.class).findRegion(image);
         final TextureRegionDrawable textureRegionDrawable = new TextureRegionDrawable(textureRegion);
         final ImageButton button                          = new ImageButton(textureRegionDrawable);
         final float buttonImageSize = (float) 1.5;
@@ -195,16 +515,16 @@ public class FishEscape extends ApplicationAdapter {
         }
         // Make the button react when it's selected
         button.addListener(new ClickListener() {
-            // When the button is touched, fire the correct function
+            // When the button is touched, queue the move for the next tick
             @Override
             public boolean touchDown(InputEvent event, float x, float y, int pointer, int button) {
                 // Move the character depending on the button, utilizing the image's name
                 switch (image.charAt(0)) {
                     case 'r':
-                        moveRight();
+                        tap(FishWorld.INPUT_RIGHT);
                         break;
                     case 'l':
-                        moveLeft();
+                        tap(FishWorld.INPUT_LEFT);
                         break;
                 }
                 return true;
@@ -215,120 +535,14 @@ public class FishEscape extends ApplicationAdapter {
     }
 
     /*
-        This function creates the fish object used to collision detection.
-     */
-    private void createFish() { fishCell = new Rectangle(fishX, fishY, cellWidth, cellHeight); }
-
-    /*
-        This function creates the enemy objects used to collision detection. It also assigns
-        textures to all of the enemies.
-     */
-    private void createEnemies() {
-        for (int i = 0; i < numberOfEnemies; i++) {
-            enemyStartX[i] = i * 2;
-            enemyTextures[i] = enemyUpTexture;
-        }
-        enemies[0] = new Rectangle(enemyStartX[0], -cellHeight, cellWidth, cellHeight);
-        enemies[1] = new Rectangle(cellWidth * enemyStartX[1], -cellHeight, cellWidth, cellHeight);
-        enemies[2] = new Rectangle(cellWidth * enemyStartX[2], -cellHeight, cellWidth, cellHeight);
-        enemies[3] = new Rectangle(cellWidth * enemyStartX[3], -cellHeight, cellWidth, cellHeight);
-    }
-
-    /*
-        This function creates all of the obstacles. It assigns a random height, width, and gap
-        between the previous obstacle for every obstacle. It then uses the created values to create
-        an obstacle. It also separates the obstacles into rows with 3 cells between each row.
-     */
-    private void createObstacles() {
-        float xGap;
-        int currentRow = 0;
-
-        // Create all the obstacles
-        for (int i = 0; i < numberOfObstacles; i++) {
-            // Make the gaps between the obstacles random between 0 and 4 cell-widths
-            xGap = cellWidth * randomGenerator.nextInt(4);
-            // Add the x gap to the end of the previous obstacle, if it's not the furthest left
-            if (i % obstaclesPerRow > 0) {
-                obstacleX[i] = obstacleX[i - 1] + obstacleWidth[i - 1] + xGap;
-            } else {
-                // Or else, add the between the border and the obstacle
-                obstacleX[i] = xGap;
-            }
-            // If it's the first row, create the obstacles at the top of the screen
-            if (currentRow == 0) {
-                obstacleY[i] = cellHeight * (numberOfVerticalCells - 1);
-            } else {
-                // Or else, add the next row 3 cells up
-                obstacleY[i] = cellHeight * (numberOfVerticalCells - 1) + currentRow * (cellHeight * obstacleYGap);
-            }
-            // Give the obstacles random widths and height between 1 and 2 cell widths or heights
-            obstacleWidth[i] = cellWidth * (randomGenerator.nextInt(2) + 1);
-            obstacleHeight[i] = cellHeight * (randomGenerator.nextInt(2) + 1);
-            // Use the created values to create the obstacle
-            obstacles[i] = new Rectangle(
-                    obstacleX[i],
-                    obstacleY[i],
-                    obstacleWidth[i],
-                    obstacleHeight[i]);
-            // Make every 4 obstacles its own row
-            if (i % obstaclesPerRow == obstaclesPerRow - 1) {
-                currentRow++;
-            }
-        }
-    }
-
-    private void createCrackers() {
-        float xGap;
-
-        int currentRow = 0;
-        // Create all the crackers
-        for (int i = 0; i < numberOfCrackers; i++) {
-            crackerTaken[i] = false;
-            // Make the gaps between the crackers random between 1 and 4 cell-widths
-            xGap = cellWidth * (randomGenerator.nextInt(4) + 1);
-            // Add the x gap to the end of the previous cracker, if it's not the furthest left
-            if (i % crackersPerRow > 0) {
-                crackerX[i] = crackerX[i - 1] + xGap;
-            } else {
-                // Or else, add the between the border and the cracker
-                crackerX[i] = xGap;
-            }
-            // If it's the first row, create the crackers at the top of the screen
-            if (currentRow == 0) {
-                crackerY[i] = cellHeight * (numberOfVerticalCells - 1);
-            } else {
-                // Or else, add the next row 3 cells up
-                crackerY[i] = cellHeight * (numberOfVerticalCells - 1) + currentRow * (cellHeight * crackerYGap);
-            }
-            // Use the created values to create the cracker
-            crackers[i] = new Rectangle(
-                    crackerX[i],
-                    crackerY[i],
-                    cellWidth,
-                    cellHeight);
-            // Make every 2 crackers its own row
-            if (i % crackersPerRow == crackersPerRow - 1) {
-                currentRow++;
-            }
-        }
-    }
-
-    /*
-        This function creates the restart button as an image of a fish.
+        This function creates the restart button. Its image is picked each time the game ends, so
+        both images are made into drawables here.
      */
-    private void createRestartButton() {
-        restartStage             = new Stage();
+    private ImageButton createRestartButton() {
         final float buttonHeight = (float) .75;
-        Texture restartTexture;
-        if (eaten) {
-            restartTexture = loseGame;
-        } else {
-            restartTexture = winGame;
-        }
-        final TextureRegion restartTextureRegion = new TextureRegion(restartTexture);
-        final TextureRegionDrawable restartTextureRegionDrawable =
-                new TextureRegionDrawable(restartTextureRegion);
-        final ImageButton restartButton = new ImageButton(restartTextureRegionDrawable);
+        loseGameDrawable = new TextureRegionDrawable(loseGame);
+        winGameDrawable  = new TextureRegionDrawable(winGame);
+        restartButton    = new ImageButton(loseGameDrawable);
         restartButton.setWidth(Gdx.graphics.getWidth());
         restartButton.setHeight(Gdx.graphics.getHeight() * buttonHeight);
         restartButton.getImageCell().expandX().fillX();
@@ -341,547 +555,590 @@ public class FishEscape extends ApplicationAdapter {
                 return true;
             }
         });
-        restartStage.addActor(restartButton);
+        return restartButton;
+    }
+
+    /*
+        This function shows the restart button as an image of a fish, a shark if the fish was eaten.
+     */
+    private void showRestartButton() {
+        if (world.isEaten()) {
+            restartButton.getStyle().imageUp = loseGameDrawable;
+            restartAlpha = loseGameAlpha;
+        } else {
+            restartButton.getStyle().imageUp = winGameDrawable;
+            restartAlpha = winGameAlpha;
+        }
         Gdx.input.setInputProcessor(restartStage);
     }
 
+    /*
+        This function draws the restart button with the shader that takes the alpha of its image
+        from the second texture unit. The batch is flushed when the shader is set and again when
+        it's put back, so only the button is drawn with it.
+     */
+    private void drawRestartButton() {
+        batch.setShader(alphaShader);
+        restartAlpha.bind(1);
+        // The batch binds its textures to the unit that's active
+        Gdx.gl.glActiveTexture(GL20.GL_TEXTURE0);
+        alphaShader.setUniformi("u_alpha", 1);
+        restartStage.getRoot().draw(batch, 1);
+        batch.setShader(null);
+    }
+
+    /*
+        This function creates the shader the restart button is drawn with. It's the batch's own
+        shader, except that the alpha is the red of the alpha texture, which has the same size
+        and layout as the texture with the colors.
+     */
+    private ShaderProgram createAlphaShader() {
+        final String vertexShader = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+                + "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+                + "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+                + "uniform mat4 u_projTrans;\n"
+                + "varying vec4 v_color;\n"
+                + "varying vec2 v_texCoords;\n"
+                + "void main() {\n"
+                + "    v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+                + "    v_color.a = v_color.a * (255.0/254.0);\n"
+                + "    v_texCoords = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+                + "    gl_Position = u_projTrans * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+                + "}\n";
+        final String fragmentShader = "#ifdef GL_ES\n"
+                + "precision mediump float;\n"
+                + "#endif\n"
+                + "varying vec4 v_color;\n"
+                + "varying vec2 v_texCoords;\n"
+                + "uniform sampler2D u_texture;\n"
+                + "uniform sampler2D u_alpha;\n"
+                + "void main() {\n"
+                + "    gl_FragColor = v_color * vec4(texture2D(u_texture, v_texCoords).rgb,\n"
+                + "                                  texture2D(u_alpha, v_texCoords).r);\n"
+                + "}\n";
+        final ShaderProgram shader = new ShaderProgram(vertexShader, fragmentShader);
+        if (!shader.isCompiled()) {
+            throw new IllegalStateException("Couldn't compile the alpha shader: " + shader.getLog());
+        }
+        return shader;
+    }
+
     private void drawBackground() {
-        batch.begin();
         batch.draw(background, 0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
-        batch.end();
     }
 
     private void drawScore() {
-        batch.begin();
+        if (shownPoints != world.getPoints()) {
+            shownPoints = world.getPoints();
+            hudText.setLength(0);
+            hudText.append("Crackers: ").append(shownPoints);
+            scoreLayout.setText(gameFont, hudText);
+        }
+        if (shownHighScore != world.getHighScore()) {
+            shownHighScore = world.getHighScore();
+            hudText.setLength(0);
+            hudText.append(" Best Score: ").append(shownHighScore);
+            highScoreLayout.setText(highScoreFont, hudText);
+        }
         gameFont.draw(
                 batch,
-                "Crackers: " + points,
+                scoreLayout,
                 Gdx.graphics.getWidth() / 2 - cellWidth,
                 Gdx.graphics.getHeight());
 
         highScoreFont.draw(
                 batch,
-                " Best Score: " + highScore,
+                highScoreLayout,
                 cellWidth * 3,
                 cellHeight / 2);
-        batch.end();
+        drawPar();
+        drawRace();
+    }
+
+    /*
+        This function draws the fewest taps it takes to get through the round. Until the finish is
+        on the map, the par only goes as far as the map does, so the round takes at least that
+        many.
+     */
+    private void drawPar() {
+        if (shownPar != world.getParTaps() || shownParFinal != world.isParFinal()) {
+            shownPar      = world.getParTaps();
+            shownParFinal = world.isParFinal();
+            hudText.setLength(0);
+            if (shownPar >= 0) {
+                hudText.append("Par: ").append(shownPar);
+                if (!shownParFinal) {
+                    hudText.append('+');
+                }
+            }
+            parLayout.setText(gameFont, hudText);
+        }
+        gameFont.draw(
+                batch,
+                parLayout,
+                cellWidth / 4,
+                Gdx.graphics.getHeight());
+    }
+
+    /*
+        This function marks the cell the fish should move up into to stay on the best route.
+     */
+    private void drawHint() {
+        final int hintX = world.getHintX();
+        if (gameEnded || hintX < 0) {
+            return;
+        }
+        batch.setColor(1, 1, 1, hintAlpha);
+        batch.draw(
+                solidRegion,
+                cellWidth  * hintX,
+                cellHeight * (world.getFishY() + 1 + scrollOffset()),
+                cellWidth,
+                cellHeight);
+        batch.setColor(Color.WHITE);
     }
 
     private void drawFinishLine() {
         final float finishLineHeight = cellHeight * 2;
         final float finishLineTextX  = cellWidth * 3;
-        final float finishLineY      = cellHeight * (movesLeft + 6);
+        final float finishLineY      = cellHeight * (world.getMovesLeft() + 6 + scrollOffset());
         final float finishTextY      = finishLineY + finishLineHeight / 2;
-        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
-        shapeRenderer.setColor(Color.RED);
-        shapeRenderer.rect(
+        batch.setColor(Color.RED);
+        batch.draw(
+                solidRegion,
                 0,
                 finishLineY,
                 Gdx.graphics.getWidth(),
                 finishLineHeight);
-        shapeRenderer.end();
-        batch.begin();
-        String levelString = "Level ";
+        batch.setColor(Color.WHITE);
+        if (shownLevel != world.getLevel()) {
+            shownLevel = world.getLevel();
+            hudText.setLength(0);
+            hudText.append("Level ").append(shownLevel);
+            levelLayout.setText(finishLineFont, hudText);
+        }
         finishLineFont.draw(
                 batch,
-                levelString + level,
+                levelLayout,
                 finishLineTextX,
                 finishTextY);
-        batch.end();
     }
 
-    private void drawFish() {
-        batch.begin();
-        switch (fishDirection) {
-            case 'l':
-                batch.draw(leftFish, fishCell.x, fishCell.y, fishCell.width, fishCell.height);
-                break;
-            case 'r':
-                batch.draw(rightFish, fishCell.x, fishCell.y, fishCell.width, fishCell.height);
-                break;
-            default:
-                batch.draw(upFish, fishCell.x, fishCell.y, fishCell.width, fishCell.height);
-                break;
+    private void drawObstacles() {
+        batch.setColor(Color.GRAY);
+        for (int i = 0; i < world.getNumberOfObstacles(); i++) {
+            batch.draw(
+                    solidRegion,
+                    cellWidth  * world.getObstacleX(i),
+                    cellHeight * (world.getObstacleY(i) + scrollOffset()),
+                    cellWidth  * world.getObstacleWidth(i),
+                    cellHeight * world.getObstacleHeight(i));
         }
-        batch.end();
+        batch.setColor(Color.WHITE);
+    }
+
+    private void drawEndScreen() {
+        gameFont.draw(
+                batch,
+                restartLayout,
+                (float) (cellWidth * 1.5),
+                Gdx.graphics.getHeight() / 4);
     }
 
     /*
-        This function draws the enemies. I also makes the background become more and more red as
-        the enemies become closer to jumping. I had to cast it to a float so that it wouldn't do
-        Integer math.
+        This function draws the frame times and counts in the corner of the screen. The text only
+        changes once a second, so reading it doesn't cost anything most frames.
      */
-    private void drawEnemies() {
-        batch.begin();
-        for (int i = 0; i < numberOfEnemies; i++) {
-            batch.draw(enemyTextures[i],
-                    enemies[i].x,
-                    enemies[i].y,
-                    enemies[i].width,
-                    enemies[i].height);
+    private void drawPerfOverlay() {
+        if (perfFrames++ % perfOverlayFrames == 0) {
+            hudText.setLength(0);
+            hudText.append("frame p50 ").append(perf.getPercentile(PerfStats.FRAME, .5) / 1000)
+                    .append(" us, p99 ").append(perf.getPercentile(PerfStats.FRAME, .99) / 1000)
+                    .append(" us\ninterval p99 ")
+                    .append(perf.getPercentile(PerfStats.FRAME_INTERVAL, .99) / 1000000)
+                    .append(" ms\ninput p99 ")
+                    .append(perf.getPercentile(PerfStats.INPUT_LATENCY, .99) / 1000000)
+                    .append(" ms, ").append(inputs.getDropped()).append(" dropped")
+                    .append("\ndraws ").append(perf.getMax(PerfStats.DRAW_CALLS))
+                    .append(", binds ").append(perf.getMax(PerfStats.TEXTURE_BINDS))
+                    .append("\ngc ").append(perf.getTotal(PerfStats.GC_COUNT))
+                    .append(" runs\nframes/min ")
+                    .append(perf.getMean(PerfStats.FRAMES_PER_MINUTE));
+            perfLayout.setText(highScoreFont, hudText);
         }
-        batch.end();
+        highScoreFont.draw(batch, perfLayout, 0, Gdx.graphics.getHeight() - cellHeight);
     }
 
-    private void drawObstacles() {
-        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
-        shapeRenderer.setColor(Color.GRAY);
-        for (int i = 0; i < numberOfObstacles; i++) {
-            shapeRenderer.rect(
-                    obstacles[i].x,
-                    obstacles[i].y,
-                    obstacles[i].width,
-                    obstacles[i].height);
+    /*
+        This function saves the frame times and counts as JSON and CSV, if the game is instrumented.
+        Every save replaces the last one from the same session.
+     */
+    private void savePerfStats() {
+        if (!perf.isEnabled()) {
+            return;
+        }
+        try {
+            Gdx.files.local(perfFile + ".json").writeString(perf.toJson(), false);
+            Gdx.files.local(perfFile + ".csv").writeString(perf.toCsv(), false);
+        } catch (Exception e) {
+            Gdx.app.error("PerfStats", "Couldn't save the frame times", e);
         }
-        shapeRenderer.end();
     }
 
-    private void drawCoins() {
-        batch.begin();
-        for (int i = 0; i < numberOfCrackers; i++) {
-            if (!crackerTaken[i]) {
-                batch.draw(crackerTexture,
-                        crackers[i].x,
-                        crackers[i].y,
-                        crackers[i].width,
-                        crackers[i].height);
-            }
+    /*
+        This function returns the frame times and counts recorded so far.
+     */
+    public PerfStats getPerfStats() { return perf; }
+
+    /*
+        This function returns how many times the last frame flushed the batch to the GPU.
+     */
+    int getRenderCalls() { return renderCalls; }
+
+    /*
+        This function returns the game being drawn.
+     */
+    FishWorld getWorld() { return world; }
+
+    /*
+        This function returns whether the assets have finished loading and the game is being drawn.
+     */
+    public boolean isLoaded() { return loaded; }
+
+    /*
+        This function queues a tap for the next tick, and has it drawn. In a race, the tap is only
+        played if the server is sent it too, on the tick after the taps that are waiting already,
+        so the fish here swims the way the server's does.
+     */
+    void tap(final int input) {
+        if (race != null && (isWaitingForRace() || !race.canTap())) {
+            return;
         }
-        batch.end();
+        final int tick = world.getFrames() + inputs.size();
+        if (inputs.add(input, TimeUtils.nanoTime()) && race != null) {
+            race.tap(input, tick);
+        }
+        requestFrame(0);
     }
 
-    private void drawEndScreen() {
-        batch.begin();
-        gameFont.draw(
-                batch,
-                "Tap the shark to restart",
-                (float) (cellWidth * 1.5),
-                Gdx.graphics.getHeight() / 4);
-        batch.end();
+    /*
+        This function starts the next round of the game and brings back the arrow buttons. The time
+        left over from the last round isn't played in the new one. A race is only one round, so the
+        next one is played alone.
+     */
+    void restart() {
+        leaveRace();
+        world.restart();
+        accumulator = 0;
+        recordReplay(ReplayRecorder.EVENT_RESTART);
+        inputs.clear();
+        gameEnded = false;
+        Gdx.input.setInputProcessor(stage);
+        requestFrame(0);
     }
 
     /*
-        This function moves the fish up. If the player tried to move off-screen or into
-        an obstacle, the fish won't move. However, the enemies will still move (to add more
-        difficulty). It also checks if the finish line was hit, if so, it creates the restart
-        button.
+        This function returns when the game wants its next frame, in the time of
+        TimeUtils.nanoTime: 0 for right away, or Long.MAX_VALUE if it's waiting for a tap. A
+        backend that can't draw on demand can use it to skip the frames that wouldn't change.
      */
-    private void moveUp() {
-        // Check if the game hasn't already ended
-        if (movesLeft > 0 && !eaten) {
-            boolean hitObstacle = false;
-            // Move the fish forward
-            fishCell.setPosition(fishCell.x, fishCell.y + cellHeight);
-            // Check if it hits any obstacles
-            for (int i = 0; i < numberOfObstacles; i++) {
-                // Test if the fish moved forward hits an obstacle
-                if (Intersector.overlaps(fishCell, obstacles[i])) {
-                    hitObstacle = true;
-                }
-            }
-            // If the fish didn't hit anything, move the map
-            if (!hitObstacle) {
-                // Move the enemies with the map
-                for (int i = 0; i < numberOfEnemies; i++) {
-                    enemies[i].setPosition(enemies[i].x, enemies[i].y - cellHeight);
-                }
-                // Move the obstacles
-                moveObstacles();
-                for (int i = 0; i < numberOfCrackers; i++) {
-                    if (Intersector.overlaps(crackers[i], fishCell) && !crackerTaken[i]) {
-                        crackerTaken[i] = true;
-                        points++;
-                    }
-                }
-                // Move the crackers
-                moveCrackers();
-                fishDirection = 'u';
-                // Change the game elements
-                moves++;
-                movesLeft--;
-                // Check if the finish line was hit
-                if (movesLeft <= 0) {
-                    createRestartButton();
+    public long getNextFrameTime() { return nextFrameTime; }
+
+    /*
+        This function starts recording the session in a new replay file and deletes the oldest
+        replays. The game still works if the replay can't be written.
+     */
+    private void startReplay(final long seed) {
+        try {
+            final FileHandle file =
+                    Gdx.files.local(replayDirectory + "/" + TimeUtils.millis() + ".replay");
+            replay = new ReplayRecorder(file.write(false), seed);
+            replayName = file.name();
+            final FileHandle replays[] = Gdx.files.local(replayDirectory).list();
+            // The names are the times the replays were started, so they sort oldest first
+            Arrays.sort(replays, new Comparator<FileHandle>() {
+                @Override
+                public int compare(final FileHandle first, final FileHandle second) {
+                    return first.name().compareTo(second.name());
                 }
+            });
+            for (int i = 0; i < replays.length - maxReplays; i++) {
+                replays[i].delete();
             }
-            // Move the fish back
-            fishCell.setPosition(fishCell.x, fishCell.y - cellHeight);
-            moveEnemies();
+        } catch (Exception e) {
+            Gdx.app.error("Replay", "Couldn't start recording", e);
+            replay = null;
         }
     }
 
     /*
-        This function moves the fish to the left. If the player tried to move off-screen or into
-        an obstacle, the fish won't move. However, the enemies will still move (to add more
-        difficulty).
+        This function records something the player did. If the replay can't be written, the
+        recording stops.
      */
-    private void moveLeft() {
-        if (fishCell.x - cellWidth >= 0 && movesLeft > 0 && !eaten) {
-            boolean hitObstacle = false;
-            // Move the fish to the left
-            fishCell.setPosition(fishCell.x - cellWidth, fishCell.y);
-            for (int i = 0; i < numberOfObstacles; i++) {
-                if (Intersector.overlaps(fishCell, obstacles[i])) {
-                    hitObstacle = true;
-                    Gdx.app.log("Left", "Y " + fishCell.y);
-                    Gdx.app.log("Obstacle", "Y " + obstacles[i].y);
-                    Gdx.app.log("Obstacle", "with height " + (obstacles[i].y + obstacles[i].height));
-                }
-            }
-            if (hitObstacle) {
-                fishCell.setPosition(fishCell.x + cellWidth, fishCell.y);
-            } else {
-                for (int i = 0; i < numberOfCrackers; i++) {
-                    if (Intersector.overlaps(crackers[i], fishCell) && !crackerTaken[i]) {
-                        crackerTaken[i] = true;
-                        points++;
-                    }
-                }
-                fishDirection = 'l';
-            }
-        } else if (fishCell.x - cellWidth < 0 && movesLeft > 0 && !eaten) {
-            boolean hitObstacle = false;
-            // Move the fish to the left
-            fishCell.setPosition(cellWidth * (numberOfHorizontalCells - 1), fishCell.y);
-            for (int i = 0; i < numberOfObstacles; i++) {
-                if (Intersector.overlaps(fishCell, obstacles[i])) {
-                    hitObstacle = true;
-                    Gdx.app.log("Left", "Y " + fishCell.y);
-                    Gdx.app.log("Obstacle", "Y " + obstacles[i].y);
-                    Gdx.app.log("Obstacle", "with height " + (obstacles[i].y + obstacles[i].height));
-                }
-            }
-            if (hitObstacle) {
-                fishCell.setPosition(0, fishCell.y);
-            } else {
-                for (int i = 0; i < numberOfCrackers; i++) {
-                    if (Intersector.overlaps(crackers[i], fishCell) && !crackerTaken[i]) {
-                        crackerTaken[i] = true;
-                        points++;
-                    }
-                }
-                fishDirection = 'l';
+    private void recordReplay(final int event) {
+        if (replay != null) {
+            try {
+                replay.record(world.getFrames(), event);
+            } catch (IOException e) {
+                Gdx.app.error("Replay", "Couldn't record", e);
+                replay = null;
             }
         }
     }
 
     /*
-        This function moves the fish to the right. If the player tried to move off-screen or into
-        an obstacle, the fish won't move. However, the enemies will still move (to add more
-        difficulty).
+        This function starts joining a race on the server. The game doesn't wait for the answer:
+        the round is held and "Waiting for racers" is shown until the race starts.
      */
-    private void moveRight() {
-        if (fishCell.x + cellWidth < Gdx.graphics.getWidth() && movesLeft > 0 && !eaten) {
-            boolean hitObstacle = false;
-            // Move the fish to the right
-            fishCell.setPosition(fishCell.x + cellWidth, fishCell.y);
-            for (int i = 0; i < numberOfObstacles; i++) {
-                if (Intersector.overlaps(fishCell, obstacles[i])) {
-                    hitObstacle = true;
+    private void joinRace() {
+        race = new RaceClient(new Random().nextInt(Integer.MAX_VALUE));
+        try {
+            race.connect(raceServer);
+        } catch (IOException e) {
+            Gdx.app.error("Race", "Couldn't join", e);
+            playAlone();
+        }
+    }
+
+    /*
+        This function reads what the race server sent and sends it the taps. Until the server lets
+        the game join, the join is sent again every so often in case it was lost, and the game
+        plays alone if there's no answer in time. If the server can't be reached anymore, the race
+        is left and the round goes on alone.
+     */
+    private void updateRace() {
+        if (race == null) {
+            return;
+        }
+        final boolean joined = race.isJoined();
+        try {
+            race.poll();
+            if (!race.isJoined()) {
+                final long now = TimeUtils.millis();
+                if (joinDeadline == 0) {
+                    joinDeadline = now + joinTimeout;
                 }
-            }
-            if (hitObstacle) {
-                fishCell.setPosition(fishCell.x - cellWidth, fishCell.y);
-            } else {
-                for (int i = 0; i < numberOfCrackers; i++) {
-                    if (Intersector.overlaps(crackers[i], fishCell) && !crackerTaken[i]) {
-                        crackerTaken[i] = true;
-                        points++;
-                    }
+                if (race.isRejected() || now >= joinDeadline) {
+                    Gdx.app.log("Race", "The race server didn't let the game join, playing alone");
+                    playAlone();
+                } else if (now - joinSent >= joinResendTime) {
+                    joinSent = now;
+                    race.send();
                 }
-                fishDirection = 'r';
+                return;
             }
-        } else if (fishCell.x + cellWidth >= Gdx.graphics.getWidth() && movesLeft > 0 && !eaten) {
-            boolean hitObstacle = false;
-            // Move the fish to the left
-            fishCell.setPosition(0, fishCell.y);
-            for (int i = 0; i < numberOfObstacles; i++) {
-                if (Intersector.overlaps(fishCell, obstacles[i])) {
-                    hitObstacle = true;
-                }
+            if (!joined) {
+                startRace();
             }
-            if (hitObstacle) {
-                fishCell.setPosition(cellWidth * (numberOfHorizontalCells - 1), fishCell.y);
+            if (checkRace()) {
+                race.setFrames(world.getFrames());
+                race.send();
+            }
+        } catch (IOException e) {
+            Gdx.app.error("Race", "Lost the race server", e);
+            if (race.isJoined()) {
+                leaveRace();
             } else {
-                for (int i = 0; i < numberOfCrackers; i++) {
-                    if (Intersector.overlaps(crackers[i], fishCell) && !crackerTaken[i]) {
-                        crackerTaken[i] = true;
-                        points++;
-                    }
-                }
-                fishDirection = 'r';
+                playAlone();
             }
         }
     }
 
     /*
-        This function moves all of the obstacles down, giving the illusion that the player is
-        moving. If a row of obstacles is more than 3 cells below the bottom of the screen, this
-        function sets them back to the top, right above the highest row.
+        This function puts the game on the race's course once it joined. The round that was shown
+        while joining never started, so a world on the race's seed takes its place.
      */
-    private void moveObstacles() {
-        // Move all of the obstacles down 1 cell
-        for (int i = 0; i < numberOfObstacles; i++) {
-            obstacleY[i] -= cellHeight;
-            obstacles[i].setPosition(obstacleX[i], obstacleY[i]);
-            // Check if an obstacle is a row below the screen
-            if (obstacleY[i] < 0 - cellWidth * obstacleYGap) {
-                // Send it behind the row furthest to the back
-                obstacleY[i] = obstacleY[furthestObstacle] + cellHeight * obstacleYGap;
-                recreateObstacle(i);
-                // Update the furthest obstacle row variable
-                if (i % obstaclesPerRow == obstaclesPerRow - 1) {
-                    furthestObstacle = i;
-                }
-            }
+    private void startRace() {
+        world.generateInBackground(false);
+        final FishWorld raceWorld = new FishWorld(race.getSeed());
+        raceWorld.setPerfStats(perf);
+        raceWorld.setHighScore(world.getHighScore());
+        raceWorld.generateInBackground(true);
+        renderSystem.setWorld(raceWorld);
+        world = raceWorld;
+        raceHistory = new RaceSnapshot[raceHistoryLength];
+        for (int i = 0; i < raceHistoryLength; i++) {
+            raceHistory[i] = new RaceSnapshot(world.getNumberOfEnemies());
         }
+        raceHistory[0].capture(world, 0, 0);
+        startReplay(race.getSeed());
     }
 
-    private void moveCrackers() {
-        // Move all of the crackers down 1 cell
-        for (int i = 0; i < numberOfCrackers; i++) {
-            crackerY[i] -= cellHeight;
-            crackers[i].setPosition(crackerX[i], crackerY[i]);
-            // Check if a cracker is a row below the screen
-            if (crackerY[i] < 0 - cellHeight * crackerYGap) {
-                // Send it behind the row furthest to the back
-                crackerY[i] = obstacleY[furthestObstacle] + cellHeight * crackerYGap;
-                recreateCracker(i);
-            }
+    /*
+        This function checks the last snapshot against the round here at the same tick, if that
+        tick was captured. They can only differ if the server missed a tap, and then the server's
+        result is the one that counts, so the race is left and the round goes on alone. It returns
+        whether the game is still in the race.
+     */
+    private boolean checkRace() {
+        final RaceSnapshot snapshot = race.getSnapshot();
+        if (snapshot == null || snapshot.getSequence() == checkedSequence) {
+            return true;
+        }
+        checkedSequence = snapshot.getSequence();
+        final RaceSnapshot local = raceHistory[snapshot.getFrame() % raceHistoryLength];
+        if (local.getFrame() == snapshot.getFrame() && !local.sameWorld(snapshot)) {
+            Gdx.app.error("Race", "The round went differently on the server at tick "
+                    + snapshot.getFrame() + ", leaving the race");
+            leaveRace();
+            return false;
         }
+        return true;
     }
 
     /*
-        This function loops through all of the enemies and executes the best movement for their
-        position. It also lets them "jump", or move again so that it's more difficult for the
-        player. It also checks if the enemy has eaten the player. Lastly, if an enemy has fallen
-        too far behind, this function resets that enemy.
+        This function returns whether the game joined a race that hasn't started yet, or is still
+        joining one.
      */
-    private void moveEnemies() {
-        final float halfScreenWidth = Gdx.graphics.getWidth() / 2;
-        // Move the enemies
-        for (int i = 0; i < numberOfEnemies; i++) {
-            if (enemies[i].y < fishCell.y) {
-                enemyForward(i);
-            } else if ((enemies[i].x > fishCell.x && enemies[i].x - fishCell.x <= halfScreenWidth) ||
-                    fishCell.x - enemies[i].x > halfScreenWidth) {
-                enemyLeft(i);
-            } else if ((enemies[i].x < fishCell.x && fishCell.x - enemies[i].x <= halfScreenWidth) ||
-                    enemies[i].x - fishCell.x > halfScreenWidth) {
-                enemyRight(i);
-            }
-            // If the enemy has eaten the player, create the restart button
-            if (Intersector.overlaps(enemies[i], fishCell)) {
-                eaten = true;
-                createRestartButton();
-            }
-            // If the enemy has fallen too far behind, recreate it
-            if (enemies[i].y < -cellHeight) {
-                resetEnemy(i);
-            }
-        }
-        // Make the enemies move faster
-        final int jumpTime = 5;
-        if (moves % jumpTime == 0 && !jumped) {
-            jumped = true;
-            moveEnemies();
-        }
-        // Reset the jumped variable so they can jump more than once
-        if (moves % jumpTime != 0 && jumped) {
-            jumped = false;
+    private boolean isWaitingForRace() {
+        if (race == null) {
+            return false;
         }
+        final RaceSnapshot snapshot = race.getSnapshot();
+        return snapshot == null || snapshot.getRaceStatus() == RaceSnapshot.RACE_WAITING;
     }
 
     /*
-        This function moves a specific enemy up. If it hit an obstacle, it moves back and tries
-        another direction.
+        This function gives up on a race the game couldn't join, and records the round it plays
+        alone instead.
      */
-    private void enemyForward(final int i) {
-        enemyTextures[i] = enemyUpTexture;
-        boolean hitObstacle = false;
-        // Move it forward
-        enemies[i].setPosition(enemies[i].x, enemies[i].y + cellHeight);
-        // Check if it hit any obstacle
-        for (int j = 0; j < numberOfObstacles; j++) {
-            if (Intersector.overlaps(enemies[i], obstacles[j])) {
-                hitObstacle = true;
-            }
+    private void playAlone() {
+        leaveRace();
+        startReplay(world.getSeed());
+    }
+
+    private void leaveRace() {
+        if (race == null) {
+            return;
         }
-        // If it did, move it back and try a different direction
-        if (hitObstacle) {
-            enemies[i].setPosition(enemies[i].x, enemies[i].y - cellHeight);
-            if (enemies[i].x > fishCell.x) {
-                enemyLeft(i);
-            } else if (enemies[i].x < fishCell.x) {
-                enemyRight(i);
-            }
+        try {
+            race.close();
+        } catch (IOException e) {
+            Gdx.app.error("Race", "Couldn't leave the race", e);
         }
+        race = null;
     }
 
     /*
-        This function moves a specific enemy to the left, so long as there's nothing in the way.
+        This function draws the player's place in the race, going by the server's copy of every
+        fish. The fewer moves a fish has left the further along it is, and a fish that was eaten is
+        behind every one that wasn't.
      */
-    private void enemyLeft(final int i) {
-        enemyTextures[i] = enemyLeftTexture;
-        boolean hitObstacle = false;
-        boolean wrapped = false;
-        // Move it left
-        if (enemies[i].x - cellWidth < 0) {
-            enemies[i].setPosition(enemies[i].x + cellWidth * (numberOfHorizontalCells - 1), enemies[i].y);
-            wrapped = true;
-        } else {
-            enemies[i].setPosition(enemies[i].x - cellWidth, enemies[i].y);
+    private void drawRace() {
+        if (race == null) {
+            return;
         }
-        // Check if it hit an obstacle
-        for (int j = 0; j < numberOfObstacles; j++) {
-            if (Intersector.overlaps(enemies[i], obstacles[j])) {
-                hitObstacle = true;
+        final RaceSnapshot snapshot = race.getSnapshot();
+        int place  = 0;
+        int racers = 0;
+        if (snapshot != null && snapshot.getRaceStatus() != RaceSnapshot.RACE_WAITING) {
+            final int slot = race.getSlot();
+            place = 1;
+            for (int i = 0; i < snapshot.getNumberOfPlayers(); i++) {
+                if (snapshot.getPlayerStatus(i) == RaceSnapshot.PLAYER_EMPTY) {
+                    continue;
+                }
+                racers++;
+                if (i != slot && isAhead(snapshot, i, slot)) {
+                    place++;
+                }
             }
         }
-        // If it did, move it back
-        if (hitObstacle) {
-            if (wrapped) {
-                enemies[i].setPosition(0, enemies[i].y);
+        if (shownPlace != place || shownRacers != racers) {
+            shownPlace  = place;
+            shownRacers = racers;
+            hudText.setLength(0);
+            if (place == 0) {
+                hudText.append("Waiting for racers");
             } else {
-                enemies[i].setPosition(enemies[i].x + cellWidth, enemies[i].y);
+                hudText.append("Place ").append(place).append(" of ").append(racers);
             }
+            raceLayout.setText(highScoreFont, hudText);
+        }
+        highScoreFont.draw(
+                batch,
+                raceLayout,
+                cellWidth / 4,
+                Gdx.graphics.getHeight() - cellHeight);
+    }
+
+    private boolean isAhead(final RaceSnapshot snapshot, final int other, final int slot) {
+        final boolean otherEaten = snapshot.getPlayerStatus(other) == RaceSnapshot.PLAYER_EATEN;
+        final boolean eaten      = snapshot.getPlayerStatus(slot)  == RaceSnapshot.PLAYER_EATEN;
+        if (otherEaten != eaten) {
+            return eaten;
         }
+        return snapshot.getPlayerMovesLeft(other) < snapshot.getPlayerMovesLeft(slot);
     }
 
     /*
-        This function moves a specific enemy to the right, so long as there's nothing in the way.
+        This function loads the round that was saved in the background and goes on recording it in
+        its replay. It returns null if there's no saved round, or it can't be loaded.
      */
-    private void enemyRight(final int i) {
-        enemyTextures[i] = enemyRightTexture;
-        boolean hitObstacle = false;
-        boolean wrapped = false;
-        // Move the enemy right
-        if (enemies[i].x + cellWidth > Gdx.graphics.getWidth()) {
-            enemies[i].setPosition(0, enemies[i].y);
-            wrapped = true;
-        } else {
-            enemies[i].setPosition(enemies[i].x + cellWidth, enemies[i].y);
+    private FishWorld loadGame() {
+        final FishWorld saved;
+        try {
+            saved = savedGame.load();
+        } catch (Exception e) {
+            Gdx.app.error("GameSnapshot", "Couldn't load the saved game", e);
+            savedGame.delete();
+            return null;
         }
-        // Check if it hit any obstacles
-        for (int j = 0; j < numberOfObstacles; j++) {
-            if (Intersector.overlaps(enemies[i], obstacles[j])) {
-                hitObstacle = true;
-            }
+        savedGame.delete();
+        if (saved == null) {
+            return null;
         }
-        // If it did, move it back
-        if (hitObstacle) {
-            if (wrapped) {
-                enemies[i].setPosition(cellWidth * (numberOfHorizontalCells - 1), enemies[i].y);
-            } else {
-                enemies[i].setPosition(enemies[i].x - cellWidth, enemies[i].y);
+        // A round saved without a replay has no name, which would make the handle the directory
+        final String name = savedGame.getReplayName();
+        if (name == null || name.isEmpty()) {
+            return saved;
+        }
+        final FileHandle file = Gdx.files.local(replayDirectory + "/" + name);
+        if (file.exists()) {
+            try {
+                replay = new ReplayRecorder(file.write(true), savedGame.getReplayFrame());
+                replayName = name;
+            } catch (Exception e) {
+                Gdx.app.error("Replay", "Couldn't go on recording", e);
+                replay = null;
             }
         }
+        return saved;
     }
 
     /*
-        This function recreates an obstacle 3 cells above the topmost row. It reassigns the obstacle
-        with a random width, height, and x gap between the previous obstacle.
+        This function writes out the recorded taps, the saved rounds, the frame times and the round
+        being played when the game goes into the background, since it might never come back.
      */
-    private void recreateObstacle(final int i) {
-        // Make a random x gap between 0 and 4 cell-widths
-        float xGap = cellWidth * randomGenerator.nextInt(4);
-        // Add the x gap to the end of the previous obstacle, if it's not the furthest left
-        if (i % obstaclesPerRow > 0) {
-            obstacleX[i] = obstacleX[i - 1] + obstacleWidth[i - 1] + xGap;
-        } else {
-            // Or else, add the between the border and the obstacle
-            obstacleX[i] = xGap;
-        }
-        // Create a random height and width between 1 and 2 cell-widths and cell-heights
-        obstacleWidth[i] = cellWidth * (randomGenerator.nextInt(2) + 1);
-        obstacleHeight[i] = cellHeight * (randomGenerator.nextInt(2) + 1);
-        // Create the obstacle with created values
-        obstacles[i]= new Rectangle(
-                obstacleX[i],
-                obstacles[i].y,
-                obstacleWidth[i],
-                obstacleHeight[i]);
-    }
-
-    private void recreateCracker(final int i) {
-        crackerTaken[i] = false;
-        // Make a random x gap between 1 and 4 cell-widths
-        float xGap = cellWidth * (randomGenerator.nextInt(4) + 1);
-        // Add the x gap to the end of the previous obstacle, if it's not the furthest left
-        if (i % crackersPerRow > 0) {
-            crackerX[i] = crackerX[i - 1] + cellWidth + xGap;
-        } else {
-            // Or else, add the between the border and the obstacle
-            crackerX[i] = xGap;
+    @Override
+    public void pause() {
+        scores.flush();
+        savePerfStats();
+        if (replay != null) {
+            try {
+                replay.flush();
+            } catch (IOException e) {
+                Gdx.app.error("Replay", "Couldn't record", e);
+                replay = null;
+            }
         }
-        // Use the created values to create the cracker
-        crackers[i] = new Rectangle(
-                crackerX[i],
-                crackerY[i],
-                cellWidth,
-                cellHeight);
-    }
-
-    /*
-        This function resets the position of an enemy.
-     */
-    private void resetEnemy(final int i) {
-        switch (i) {
-            case 0:
-                enemies[0].setPosition(enemyStartX[0], -cellHeight);
-                break;
-            case 1:
-                enemies[1].setPosition(cellWidth * enemyStartX[1], -cellHeight);
-                break;
-            case 2:
-                enemies[2].setPosition(cellWidth * enemyStartX[2], -cellHeight);
-                break;
-            case 3:
-                enemies[3].setPosition(cellWidth * enemyStartX[3], -cellHeight);
-                break;
+        try {
+            savedGame.save(world, replay == null ? null : replayName,
+                    replay == null ? 0 : replay.getLastFrame());
+        } catch (IOException e) {
+            Gdx.app.error("GameSnapshot", "Couldn't save the game", e);
         }
     }
 
     /*
-        This function resets any variable that's changed and essential to gameplay.
+        This function forgets the saved round when the game comes back, since the one in memory
+        has gone on from it. The time left over from before the game went away isn't played.
      */
-    private void restart() {
-        if (eaten) {
-            if (points > highScore) {
-                highScore = points;
-            }
-            points   = 0;
-            level    = 0;
-            moveTime = 70;
-        }
-        // Reset the game data
-        level++;
-        movesLeft = goal;
-        moves = 0;
-        eaten = false;
-        fishX = cellWidth * startXLocation;
-        fishY = cellHeight * startYLocation;
-        furthestObstacle = numberOfObstacles - 1;
-        moveTime -= 10;
-        if (moveTime <= 20) {
-            moveTime += 5;
-            if (moveTime <= 0) {
-                moveTime = 5;
-            }
-        }
-        // Create the objects in the game
-        createFish();
-        createEnemies();
-        createObstacles();
-        createCrackers();
-        for (int i = 0; i < numberOfCrackers; i++) {
-            crackerTaken[i] = false;
-        }
-        // Recreate the arrow buttons
-        stage = new Stage();
-        stage.addActor(createArrowButton("left_arrow.png"));
-        stage.addActor(createArrowButton("right_arrow.png"));
-        Gdx.input.setInputProcessor(stage);
+    @Override
+    public void resume() {
+        savedGame.delete();
+        accumulator = 0;
+        requestFrame(0);
     }
 
     /*
@@ -889,27 +1146,32 @@ public class FishEscape extends ApplicationAdapter {
      */
 	@Override
 	public void dispose () {
-	    // Dispose of all the Textures
-        background.dispose();
-        upFish.dispose();
-		leftFish.dispose();
-		rightFish.dispose();
-        crackerTexture.dispose();
-        loseGame.dispose();
-        winGame.dispose();
-		for (int i = 0; i < numberOfEnemies; i++) {
-		    enemyTextures[i].dispose();
-        }
-        enemyLeftTexture.dispose();
-		enemyRightTexture.dispose();
-		enemyUpTexture.dispose();
-		// Dispose of all the fonts
-		finishLineFont.dispose();
-		highScoreFont.dispose();
-		gameFont.dispose();
+        // The game was closed rather than killed, so the next one starts a new round
+        savedGame.delete();
+        frameTask.cancel();
+        leaveRace();
+        world.generateInBackground(false);
+        scores.close();
+        savePerfStats();
+        if (replay != null) {
+            try {
+                replay.close(world.getFrames());
+            } catch (IOException e) {
+                Gdx.app.error("Replay", "Couldn't finish recording", e);
+            }
+        }
+	    // Dispose of the atlas and all the Textures
+        assets.dispose();
+        if (loaded) {
+            // Dispose of all the fonts
+            finishLineFont.dispose();
+            highScoreFont.dispose();
+            gameFont.dispose();
+            stage.dispose();
+            restartStage.dispose();
+            alphaShader.dispose();
+        }
 		// Dispose of the rest
         batch.dispose();
-        stage.dispose();
-        shapeRenderer.dispose();
 	}
 }
@@ -0,0 +1,715 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * This class is the simulation of the fish game, without any of the rendering. Everything is
+ * measured in grid cells instead of pixels, so it can be stepped without a screen or a GL context,
+ * for example by bots, tests and benchmarks. The game itself draws on top of this class.
+ */
+public class FishWorld {
+    // Inputs that can be passed to tick
+    public static final int INPUT_NONE  = 0;
+    public static final int INPUT_LEFT  = 1;
+    public static final int INPUT_RIGHT = 2;
+    // What ate the fish
+    public static final int DEATH_NONE       = 0;
+    public static final int DEATH_SHARK      = 1;
+    public static final int DEATH_SHARK_JUMP = 2;
+    public static final int DEATH_BLOCKED    = 3;
+    // How many sharks a world has unless it's made with another number
+    public static final int DEFAULT_NUMBER_OF_ENEMIES = 4;
+    // The fish, the sharks and the crackers are entities, which the systems of the engine update
+    // every tick. The obstacles are part of the map instead, since everything asks whether a cell
+    // is covered much more often than the obstacles change.
+    @SuppressWarnings("unchecked")
+    public static final Family FISH     = Family.all(FishComponent.class, PositionComponent.class,
+            DirectionComponent.class).get();
+    @SuppressWarnings("unchecked")
+    public static final Family SHARKS   = Family.all(SharkComponent.class, PositionComponent.class,
+            DirectionComponent.class).get();
+    @SuppressWarnings("unchecked")
+    public static final Family CRACKERS = Family.all(CrackerComponent.class,
+            PositionComponent.class).get();
+    // Where the rows of obstacles and crackers come from
+    private final ChunkGenerator chunks;
+    // Where the time spent moving is recorded, nothing by default
+    private PerfStats perf = PerfStats.DISABLED;
+    // General game data
+    private final int numberOfVerticalCells = 14;
+    private final int numberOfHorizontalCells = 8;
+    private final int goal = 40;
+    private int movesLeft = goal;
+    private int highScore = 0;
+    private int moves = 0;
+    private int points = 0;
+    private int moveTime = 60;
+    private int frames = 0;
+    private int level = 1;
+    // The entities and the systems that update them
+    private final Engine engine = new Engine();
+    private final MovementSystem movement;
+    private final PickupSystem pickup;
+    private final AISystem ai;
+    // The best route through the rows, for the par and the hints
+    private final RouteSolver route;
+    private final ComponentMapper<PositionComponent> positions =
+            ComponentMapper.getFor(PositionComponent.class);
+    private final ComponentMapper<DirectionComponent> directions =
+            ComponentMapper.getFor(DirectionComponent.class);
+    private final ComponentMapper<SharkComponent> sharkComponents =
+            ComponentMapper.getFor(SharkComponent.class);
+    private final ComponentMapper<CrackerComponent> crackerComponents =
+            ComponentMapper.getFor(CrackerComponent.class);
+    private ImmutableArray<Entity> sharks;
+    private ImmutableArray<Entity> crackers;
+    // Main fish data
+    private final int startYLocation = 5;
+    private final int startXLocation = 3;
+    private final Entity fish = new Entity();
+    private final FishComponent fishComponent = new FishComponent();
+    private final PositionComponent fishPosition = new PositionComponent();
+    private final DirectionComponent fishDirection = new DirectionComponent();
+    private boolean eaten = false;
+    private int deathCause = DEATH_NONE;
+    // Whether an obstacle stopped the fish the last time it tried to move up
+    private boolean blocked = false;
+    // Whether the fish moves up this tick
+    private boolean movingUp = false;
+    // Row data. The obstacles and crackers come in rows that are kept in a ring buffer. The rows
+    // never move, instead scroll counts how far the map has moved and headRow is the row closest
+    // to the bottom of the screen.
+    private final int numberOfRows = 6;
+    private final int rowYGap      = 3;
+    private int rowY[] = new int[numberOfRows];
+    private int headRow = 0;
+    private int scroll = 0;
+    private int previousScroll = 0;
+    // Obstacle data
+    private final int obstaclesPerRow   = 4;
+    private final int numberOfObstacles = numberOfRows * obstaclesPerRow;
+    private int obstacleX[]      = new int[numberOfObstacles];
+    private int obstacleWidth[]  = new int[numberOfObstacles];
+    private int obstacleHeight[] = new int[numberOfObstacles];
+    // Which cells are covered by obstacles, one bit per cell and one long per row of the map. It
+    // is a ring buffer as well, indexed by the row's position on the map.
+    private long occupancy[] = new long[32];
+    // Cracker data, the crackers of a row are next to each other in the family
+    private final int crackersPerRow   = 3;
+    private final int numberOfCrackers = numberOfRows * crackersPerRow;
+
+    /*
+        This constructor creates a world with random obstacles.
+     */
+    public FishWorld() {
+        this(new Random().nextLong());
+    }
+
+    /*
+        This constructor creates a world whose obstacles always come out the same for the seed.
+     */
+    public FishWorld(final long seed) {
+        this(seed, DEFAULT_NUMBER_OF_ENEMIES);
+    }
+
+    /*
+        This constructor creates a world with any number of sharks. They start spread out in a row
+        right below the screen, two cells apart.
+     */
+    public FishWorld(final long seed, final int numberOfEnemies) {
+        chunks = new ChunkGenerator(seed);
+        // The systems run in this order every tick
+        movement = new MovementSystem(this, 0);
+        pickup   = new PickupSystem(this, 1);
+        ai       = new AISystem(this, 2);
+        engine.addSystem(movement);
+        engine.addSystem(pickup);
+        engine.addSystem(ai);
+        engine.addSystem(new CollisionSystem(this, 3));
+        // The rows between the fish and the top of the map never fill more than the map and the
+        // screen
+        route = new RouteSolver(this, numberOfRows * rowYGap + numberOfVerticalCells);
+        // Create all of the objects in the game
+        fish.add(fishComponent).add(fishPosition).add(fishDirection);
+        engine.addEntity(fish);
+        for (int i = 0; i < numberOfEnemies; i++) {
+            final SharkComponent shark = new SharkComponent();
+            shark.startX = i * 2 % numberOfHorizontalCells;
+            engine.addEntity(new Entity().add(shark).add(new PositionComponent())
+                    .add(new DirectionComponent()));
+        }
+        for (int i = 0; i < numberOfCrackers; i++) {
+            engine.addEntity(new Entity().add(new CrackerComponent()).add(new PositionComponent()));
+        }
+        sharks   = engine.getEntitiesFor(SHARKS);
+        crackers = engine.getEntitiesFor(CRACKERS);
+        createObstacles();
+        createFish();
+        createEnemies();
+        route.reset(startXLocation, startYLocation, startYLocation + goal);
+    }
+
+    /*
+        This function advances the game by one frame. The input is applied first, then the fish
+        moves up every moveTime frames. Where everything was before the frame is kept, so the game
+        can be drawn part of the way between two frames.
+     */
+    public void tick(final int input) {
+        final boolean moveUp = frames % moveTime == 0;
+        final long moveStart = perf.start();
+        step(input, moveUp);
+        if (moveUp) {
+            perf.stop(PerfStats.MOVE_UP, moveStart);
+        }
+        frames++;
+    }
+
+    /*
+        This function runs every system once. The engine is always updated a whole tick at a time.
+     */
+    private void step(final int input, final boolean moveUp) {
+        previousScroll = scroll;
+        movingUp = moveUp && canMove();
+        fishComponent.input = input;
+        engine.update(1);
+        fishComponent.input = INPUT_NONE;
+        movingUp = false;
+    }
+
+    /*
+        This function places the fish at its starting cell.
+     */
+    private void createFish() {
+        fishPosition.set(startXLocation, startYLocation + scroll);
+        fishDirection.direction = 'u';
+    }
+
+    /*
+        This function places the sharks in a row right below the screen.
+     */
+    private void createEnemies() {
+        for (int i = 0; i < sharks.size(); i++) {
+            final Entity shark = sharks.get(i);
+            positions.get(shark).set(sharkComponents.get(shark).startX, scroll - 1);
+            directions.get(shark).direction = 'u';
+        }
+    }
+
+    /*
+        This function creates all of the rows of obstacles and crackers, starting at the top of the
+        screen with 3 cells between each row.
+     */
+    void createObstacles() {
+        // Clear the old obstacles out of the occupancy grid
+        for (int row = 0; row < occupancy.length; row++) {
+            occupancy[row] = 0;
+        }
+        scroll         = 0;
+        previousScroll = 0;
+        headRow        = 0;
+        ai.reset();
+        // Create all the rows
+        for (int row = 0; row < numberOfRows; row++) {
+            rowY[row] = (numberOfVerticalCells - 1) + row * rowYGap;
+            recreateRow(row);
+        }
+    }
+
+    /*
+        This function runs a tick in which the fish moves up, without any input. If the fish would
+        move into an obstacle, it won't move. However, the sharks will still move (to add more
+        difficulty).
+     */
+    void moveUp() {
+        step(INPUT_NONE, true);
+    }
+
+    /*
+        This function moves the fish to the left, wrapping around to the right edge of the screen.
+        If the fish would move into an obstacle, it won't move.
+     */
+    public void moveLeft() {
+        movement.moveSideways(fish, -1);
+        pickup.takeCrackers(fishPosition.x, fishPosition.y);
+    }
+
+    /*
+        This function moves the fish to the right, wrapping around to the left edge of the screen.
+        If the fish would move into an obstacle, it won't move.
+     */
+    public void moveRight() {
+        movement.moveSideways(fish, 1);
+        pickup.takeCrackers(fishPosition.x, fishPosition.y);
+    }
+
+    /*
+        This function checks if a cell of the screen is covered by any obstacle.
+     */
+    public boolean hitsObstacle(final int x, final int y) {
+        return hitsObstacleOnMap(x, y + scroll);
+    }
+
+    /*
+        This function checks if a cell of the map is covered by any obstacle by looking up its bit
+        in the occupancy grid.
+     */
+    boolean hitsObstacleOnMap(final int x, final int mapY) {
+        return (mapRow(mapY) & (1L << x)) != 0;
+    }
+
+    /*
+        This function returns the bits of the cells covered by obstacles in a row of the screen.
+     */
+    long obstacleRow(final int y) {
+        return mapRow(y + scroll);
+    }
+
+    /*
+        This function returns the bits of the cells covered by obstacles in a row of the map. Rows
+        below the first row or above the last row don't have any obstacles.
+     */
+    long mapRow(final int mapY) {
+        if (mapY < rowY[headRow] || mapY >= rowY[backRow()] + rowYGap) {
+            return 0;
+        }
+        return occupancy[mapY & (occupancy.length - 1)];
+    }
+
+    /*
+        This function checks if a row of the map is one of the rows the crackers are in.
+     */
+    boolean hasCrackers(final int mapY) {
+        final int rowsAhead = mapY - rowY[headRow];
+        return rowsAhead >= 0 && rowsAhead % rowYGap == 0 && rowsAhead / rowYGap < numberOfRows;
+    }
+
+    /*
+        This function returns the bits of the cells of a row of the map with a cracker that hasn't
+        been taken.
+     */
+    long crackerRow(final int mapY) {
+        if (!hasCrackers(mapY)) {
+            return 0;
+        }
+        final int row = (headRow + (mapY - rowY[headRow]) / rowYGap) % numberOfRows;
+        long bits = 0;
+        for (int i = 0; i < crackersPerRow; i++) {
+            final Entity cracker = crackers.get(row * crackersPerRow + i);
+            if (!crackerComponents.get(cracker).taken) {
+                bits |= 1L << positions.get(cracker).x;
+            }
+        }
+        return bits;
+    }
+
+    /*
+        This function returns the first row past the end of the map.
+     */
+    int getMapEnd() { return rowY[backRow()] + rowYGap; }
+
+    /*
+        This function sets the cells covered by an obstacle in the occupancy grid.
+     */
+    private void markObstacle(final int i) {
+        // Obstacles can stick out past the right edge, but never past the last bit of the row
+        final long rowBits = ((1L << obstacleWidth[i]) - 1) << obstacleX[i];
+        final int obstacleY = rowY[i / obstaclesPerRow];
+        for (int y = obstacleY; y < obstacleY + obstacleHeight[i]; y++) {
+            occupancy[y & (occupancy.length - 1)] |= rowBits;
+        }
+    }
+
+    /*
+        This function takes every cracker in a cell of the screen that hasn't been taken yet.
+     */
+    void takeCrackers(final int x, final int y) {
+        pickup.takeCrackers(x, y + scroll);
+    }
+
+    /*
+        This function moves the map down under the fish, giving the illusion that the player is
+        moving. If a row is more than 3 cells below the bottom of the screen, this function sends
+        it back to the top, right above the highest row, and fills it again. The route solver then
+        drops the row the fish left and solves the new rows.
+     */
+    void scrollMap() {
+        scroll++;
+        moves++;
+        movesLeft--;
+        if (rowY[headRow] - scroll < -rowYGap) {
+            final int row = headRow;
+            // Clear the row's old obstacles, they're only in the rows of the map it covers
+            for (int y = rowY[row]; y < rowY[row] + rowYGap; y++) {
+                occupancy[y & (occupancy.length - 1)] = 0;
+            }
+            rowY[row] = rowY[backRow()] + rowYGap;
+            headRow = (headRow + 1) % numberOfRows;
+            recreateRow(row);
+        }
+        final long routeStart = perf.start();
+        route.update();
+        perf.stop(PerfStats.ROUTE_SOLVER, routeStart);
+    }
+
+    /*
+        The row furthest to the back is the one right before the head of the ring buffer.
+     */
+    private int backRow() {
+        return (headRow + numberOfRows - 1) % numberOfRows;
+    }
+
+    /*
+        This function moves every shark, outside of a tick.
+     */
+    void moveEnemies() {
+        ai.moveSharks();
+    }
+
+    /*
+        This function fills a row with the next chunk of obstacles and crackers.
+     */
+    void recreateRow(final int row) {
+        final ChunkGenerator.Chunk chunk = chunks.next();
+        for (int i = 0; i < obstaclesPerRow; i++) {
+            final int obstacle = row * obstaclesPerRow + i;
+            obstacleX[obstacle]      = chunk.obstacleX[i];
+            obstacleWidth[obstacle]  = chunk.obstacleWidth[i];
+            obstacleHeight[obstacle] = chunk.obstacleHeight[i];
+            markObstacle(obstacle);
+        }
+        for (int i = 0; i < crackersPerRow; i++) {
+            final Entity cracker = crackers.get(row * crackersPerRow + i);
+            positions.get(cracker).set(chunk.crackerX[i], rowY[row]);
+            crackerComponents.get(cracker).taken = chunk.crackerHidden[i];
+        }
+    }
+
+    /*
+        This function resets any variable that's changed and essential to gameplay. If the fish was
+        eaten, the game starts over from the first level, otherwise it goes on to the next level.
+     */
+    public void restart() {
+        if (eaten) {
+            if (points > highScore) {
+                highScore = points;
+            }
+            points   = 0;
+            level    = 0;
+            moveTime = 70;
+        }
+        // Reset the game data
+        level++;
+        movesLeft = goal;
+        moves = 0;
+        eaten = false;
+        deathCause = DEATH_NONE;
+        blocked = false;
+        moveTime -= 10;
+        if (moveTime <= 20) {
+            moveTime += 5;
+            if (moveTime <= 0) {
+                moveTime = 5;
+            }
+        }
+        // Create the objects in the game
+        createObstacles();
+        createFish();
+        createEnemies();
+        route.reset(startXLocation, startYLocation, startYLocation + goal);
+    }
+
+    /*
+        This function starts the game over from the first level whether or not the round ended, the
+        same way as when the fish is eaten.
+     */
+    public void startOver() {
+        eaten = true;
+        restart();
+    }
+
+    /*
+        This function writes everything that changes during a round, so the round can go on from
+        here in a world created with the same seed. The rows are written as they are, and the rows
+        still to come are known from the seed and the index of the next chunk. The cells covered by
+        obstacles and the sharks' flow field aren't written, they're worked out again from the rest.
+     */
+    public void writeState(final DataOutput out) throws IOException {
+        out.writeShort(level);
+        out.writeShort(moveTime);
+        out.writeInt(frames);
+        out.writeShort(movesLeft);
+        out.writeShort(moves);
+        out.writeInt(points);
+        out.writeInt(highScore);
+        out.writeBoolean(eaten);
+        out.writeByte(deathCause);
+        out.writeBoolean(blocked);
+        out.writeShort(scroll);
+        out.writeInt(chunks.getNextIndex());
+        out.writeByte(headRow);
+        for (int row = 0; row < numberOfRows; row++) {
+            out.writeShort(rowY[row]);
+        }
+        for (int i = 0; i < numberOfObstacles; i++) {
+            out.writeByte(obstacleX[i]);
+            out.writeByte(obstacleWidth[i] | obstacleHeight[i] << 4);
+        }
+        for (int i = 0; i < numberOfCrackers; i++) {
+            out.writeByte(positions.get(crackers.get(i)).x);
+            out.writeBoolean(crackerComponents.get(crackers.get(i)).taken);
+        }
+        out.writeByte(fishPosition.x);
+        out.writeShort(fishPosition.y);
+        out.writeChar(fishDirection.direction);
+        out.writeBoolean(ai.hasJumped());
+        out.writeShort(sharks.size());
+        for (int i = 0; i < sharks.size(); i++) {
+            final Entity shark = sharks.get(i);
+            out.writeByte(positions.get(shark).x);
+            out.writeShort(positions.get(shark).y);
+            out.writeChar(directions.get(shark).direction);
+            out.writeBoolean(sharkComponents.get(shark).jumped);
+        }
+        route.writeState(out);
+    }
+
+    /*
+        This function puts the world back the way writeState found it. Everything is left where it
+        is, so nothing is drawn moving from where it was before. The rows can't be made ahead while
+        it's read.
+     */
+    public void readState(final DataInput in) throws IOException {
+        level      = in.readShort();
+        moveTime   = in.readShort();
+        frames     = in.readInt();
+        movesLeft  = in.readShort();
+        moves      = in.readShort();
+        points     = in.readInt();
+        highScore  = in.readInt();
+        eaten      = in.readBoolean();
+        deathCause = in.readByte();
+        blocked    = in.readBoolean();
+        scroll         = in.readShort();
+        previousScroll = scroll;
+        chunks.skipTo(in.readInt());
+        headRow = in.readByte();
+        if (headRow < 0 || headRow >= numberOfRows) {
+            throw new IOException("Not a saved world");
+        }
+        for (int row = 0; row < numberOfRows; row++) {
+            rowY[row] = in.readShort();
+        }
+        for (int row = 0; row < occupancy.length; row++) {
+            occupancy[row] = 0;
+        }
+        for (int i = 0; i < numberOfObstacles; i++) {
+            obstacleX[i] = in.readByte();
+            final int size = in.readByte();
+            obstacleWidth[i]  = size & 0x0F;
+            obstacleHeight[i] = size >> 4;
+            markObstacle(i);
+        }
+        for (int i = 0; i < numberOfCrackers; i++) {
+            positions.get(crackers.get(i)).set(in.readByte(), rowY[i / crackersPerRow]);
+            crackerComponents.get(crackers.get(i)).taken = in.readBoolean();
+        }
+        final int fishX = in.readByte();
+        fishPosition.set(fishX, in.readShort());
+        fishDirection.direction = in.readChar();
+        ai.reset();
+        ai.setJumped(in.readBoolean());
+        if (in.readShort() != sharks.size()) {
+            throw new IOException("The saved world has a different number of sharks");
+        }
+        for (int i = 0; i < sharks.size(); i++) {
+            final Entity shark = sharks.get(i);
+            final int sharkX = in.readByte();
+            positions.get(shark).set(sharkX, in.readShort());
+            directions.get(shark).direction = in.readChar();
+            sharkComponents.get(shark).jumped = in.readBoolean();
+        }
+        route.readState(in);
+    }
+
+    /*
+        The fish can only move while the game isn't over.
+     */
+    boolean canMove() { return movesLeft > 0 && !eaten; }
+
+    boolean isMovingUp() { return movingUp; }
+
+    boolean isBlocked() { return blocked; }
+
+    void setBlocked(final boolean blocked) { this.blocked = blocked; }
+
+    void addPoint() { points++; }
+
+    /*
+        This function ends the game with the fish eaten, unless it already was.
+     */
+    void eat(final int deathCause) {
+        if (!eaten) {
+            eaten = true;
+            this.deathCause = deathCause;
+        }
+    }
+
+    /*
+        This function returns the engine the entities and the systems of the world are in. Systems
+        that only the game needs, like drawing, can be added to it.
+     */
+    public Engine getEngine() { return engine; }
+
+    /*
+        The game is over once the fish has been eaten or has reached the finish line.
+     */
+    public boolean isOver() { return eaten || movesLeft <= 0; }
+
+    public boolean isEaten() { return eaten; }
+
+    public int getDeathCause() { return deathCause; }
+
+    public int getNumberOfVerticalCells() { return numberOfVerticalCells; }
+
+    public int getNumberOfHorizontalCells() { return numberOfHorizontalCells; }
+
+    public int getMovesLeft() { return movesLeft; }
+
+    public int getMoves() { return moves; }
+
+    public int getPoints() { return points; }
+
+    public int getHighScore() { return highScore; }
+
+    /*
+        This function sets the high score, like the one saved from the last time the game was played.
+     */
+    public void setHighScore(final int highScore) { this.highScore = highScore; }
+
+    /*
+        This function sets where the time spent moving the fish and the sharks is recorded. Every
+        system records its own time as well.
+     */
+    public void setPerfStats(final PerfStats perf) {
+        this.perf = perf;
+        final ImmutableArray<EntitySystem> systems = engine.getSystems();
+        for (int i = 0; i < systems.size(); i++) {
+            if (systems.get(i) instanceof TimedSystem) {
+                ((TimedSystem) systems.get(i)).setPerfStats(perf);
+            }
+        }
+    }
+
+    /*
+        This function has the rows made ahead on a worker thread, or made when they're needed again.
+        The rows come out the same either way.
+     */
+    public void generateInBackground(final boolean background) {
+        if (background) {
+            chunks.start();
+        } else {
+            chunks.stop();
+        }
+    }
+
+    /*
+        This function returns how many rows the world had to make itself, because the worker was
+        behind or not running.
+     */
+    public long getInlineChunks() { return chunks.getInlineChunks(); }
+
+    /*
+        This function returns the seed the rows are made from.
+     */
+    public long getSeed() { return chunks.getSeed(); }
+
+    public int getLevel() { return level; }
+
+    public int getMoveTime() { return moveTime; }
+
+    public int getFrames() { return frames; }
+
+    public int getFishX() { return fishPosition.x; }
+
+    public int getFishY() { return fishPosition.y - scroll; }
+
+    int getFishMapY() { return fishPosition.y; }
+
+    /*
+        The fish always stays in the row of the screen it starts in, since the map moves instead.
+     */
+    int getFishStartY() { return startYLocation; }
+
+    public char getFishDirection() { return fishDirection.direction; }
+
+    public int getPreviousFishX() { return fishPosition.previousX; }
+
+    public int getScroll() { return scroll; }
+
+    public int getPreviousScroll() { return previousScroll; }
+
+    public int getNumberOfEnemies() { return sharks.size(); }
+
+    public int getEnemyX(final int i) { return positions.get(sharks.get(i)).x; }
+
+    public int getEnemyY(final int i) { return positions.get(sharks.get(i)).y - scroll; }
+
+    public char getEnemyDirection(final int i) { return directions.get(sharks.get(i)).direction; }
+
+    public int getPreviousEnemyX(final int i) { return positions.get(sharks.get(i)).previousX; }
+
+    public int getPreviousEnemyY(final int i) {
+        return positions.get(sharks.get(i)).previousY - previousScroll;
+    }
+
+    public int getNumberOfObstacles() { return numberOfObstacles; }
+
+    public int getObstacleX(final int i) { return obstacleX[i]; }
+
+    public int getObstacleY(final int i) { return rowY[i / obstaclesPerRow] - scroll; }
+
+    public int getObstacleWidth(final int i) { return obstacleWidth[i]; }
+
+    public int getObstacleHeight(final int i) { return obstacleHeight[i]; }
+
+    public int getNumberOfCrackers() { return numberOfCrackers; }
+
+    public int getCrackerX(final int i) { return positions.get(crackers.get(i)).x; }
+
+    public int getCrackerY(final int i) { return positions.get(crackers.get(i)).y - scroll; }
+
+    public boolean isCrackerTaken(final int i) { return crackerComponents.get(crackers.get(i)).taken; }
+
+    /*
+        This function returns the fewest taps of any route from the start of the round to the
+        finish, or to the top of the map while the finish isn't on it, or -1 if there's none.
+     */
+    public int getParTaps() { return route.getParTaps(); }
+
+    public int getParCrackers() { return route.getParCrackers(); }
+
+    public boolean isParFinal() { return route.isParFinal(); }
+
+    /*
+        This function returns the column of the screen the fish should swim to before it next
+        moves up, to stay on the best route, or -1 if it can't get through.
+     */
+    public int getHintX() { return route.getHintX(); }
+
+    /*
+        This function returns the input that takes the fish towards the hint, or INPUT_NONE.
+     */
+    public int getHintInput() { return route.getHintInput(); }
+
+    public int getHintTaps() { return route.getHintTaps(); }
+}
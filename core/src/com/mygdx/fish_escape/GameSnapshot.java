@@ -0,0 +1,102 @@
+package com.mygdx.fish_escape;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * This class saves the round being played when the game goes into the background, so it can go on
+ * if the process is killed before it comes back. The snapshot is the seed of the world, the replay
+ * the round is being recorded in and the world's state, a few hundred bytes in all. Loading it
+ * creates a world with the seed and puts the state back, which takes a few milliseconds instead
+ * of starting a new round.
+ *
+ * The snapshot is only good while the game is in the background; once it comes back, the round
+ * goes on from where it was in memory, so the snapshot is deleted.
+ */
+public class GameSnapshot {
+    // The start of every snapshot file, followed by the version of the format
+    static final int magic = 0x46455347;
+    static final int version = 2;
+    private final File file;
+    // Where the replay of the loaded round was, and its last record
+    private String replayName;
+    private int replayFrame;
+
+    public GameSnapshot(final File file) {
+        this.file = file;
+    }
+
+    /*
+        This function writes the world to a new file and then puts it in place of the snapshot, so
+        there is always a whole snapshot on the disk. The replay is the name of the file the round
+        is recorded in, or null if it isn't.
+     */
+    public void save(final FishWorld world, final String replayName, final int replayFrame)
+            throws IOException {
+        final File newFile = new File(file.getPath() + ".new");
+        final DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newFile)));
+        try {
+            out.writeInt(magic);
+            out.writeByte(version);
+            out.writeLong(world.getSeed());
+            out.writeUTF(replayName == null ? "" : replayName);
+            out.writeInt(replayFrame);
+            world.writeState(out);
+        } finally {
+            out.close();
+        }
+        if (!newFile.renameTo(file)) {
+            // Some file systems can't rename over a file that exists
+            file.delete();
+            if (!newFile.renameTo(file)) {
+                throw new IOException("Couldn't replace " + file);
+            }
+        }
+    }
+
+    /*
+        This function creates the world that was saved, or returns null if there's no snapshot.
+     */
+    public FishWorld load() throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        final DataInputStream in =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != magic || in.readUnsignedByte() != version) {
+                throw new IOException("Not a game snapshot");
+            }
+            final FishWorld world = new FishWorld(in.readLong());
+            replayName  = in.readUTF();
+            replayFrame = in.readInt();
+            world.readState(in);
+            return world;
+        } finally {
+            in.close();
+        }
+    }
+
+    public void delete() {
+        file.delete();
+    }
+
+    /*
+        This function returns the name of the replay the loaded round was recorded in, or null.
+     */
+    public String getReplayName() {
+        return replayName == null || replayName.length() == 0 ? null : replayName;
+    }
+
+    /*
+        This function returns the frame of the last record in the loaded round's replay.
+     */
+    public int getReplayFrame() { return replayFrame; }
+}
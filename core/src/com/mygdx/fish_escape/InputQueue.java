@@ -0,0 +1,72 @@
+package com.mygdx.fish_escape;
+
+/**
+ * This class holds the taps the player made until the game is ticked. Each tap is turned into a
+ * command, FishWorld's input and the time it was made, and the game takes one command per tick in
+ * the order they were made. Only a few commands are held, so a burst of taps can't keep the fish
+ * moving long after the player stopped; the taps that don't fit are dropped.
+ */
+public class InputQueue {
+    private final int inputs[];
+    private final long times[];
+    private int head = 0;
+    private int size = 0;
+    private long dropped = 0;
+
+    public InputQueue(final int capacity) {
+        inputs = new int[capacity];
+        times  = new long[capacity];
+    }
+
+    /*
+        This function adds a command, unless the queue is full. It returns whether it was added.
+     */
+    public boolean add(final int input, final long time) {
+        if (size == inputs.length) {
+            dropped++;
+            return false;
+        }
+        final int tail = (head + size) % inputs.length;
+        inputs[tail] = input;
+        times[tail]  = time;
+        size++;
+        return true;
+    }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public int size() { return size; }
+
+    /*
+        This function returns the input of the oldest command.
+     */
+    public int peekInput() { return inputs[head]; }
+
+    /*
+        This function returns when the oldest command was made.
+     */
+    public long peekTime() { return times[head]; }
+
+    /*
+        This function removes the oldest command.
+     */
+    public void remove() {
+        head = (head + 1) % inputs.length;
+        size--;
+    }
+
+    /*
+        This function removes all of the commands, like when the round ends.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public int getCapacity() { return inputs.length; }
+
+    /*
+        This function returns how many commands didn't fit.
+     */
+    public long getDropped() { return dropped; }
+}
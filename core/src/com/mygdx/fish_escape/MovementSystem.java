@@ -0,0 +1,89 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+
+/**
+ * This system runs first every tick. It remembers where everything was, then moves the fish the
+ * way the player asked and, when it's time, up. The map follows the fish, so moving the fish up is
+ * what scrolls it.
+ */
+class MovementSystem extends TimedSystem {
+    private final FishWorld world;
+    private final ComponentMapper<PositionComponent> positions =
+            ComponentMapper.getFor(PositionComponent.class);
+    private final ComponentMapper<DirectionComponent> directions =
+            ComponentMapper.getFor(DirectionComponent.class);
+    private final ComponentMapper<FishComponent> fishes = ComponentMapper.getFor(FishComponent.class);
+    private ImmutableArray<Entity> positioned;
+    private ImmutableArray<Entity> fish;
+
+    MovementSystem(final FishWorld world, final int priority) {
+        super(priority, PerfStats.MOVEMENT_SYSTEM);
+        this.world = world;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void addedToEngine(final Engine engine) {
+        positioned = engine.getEntitiesFor(Family.all(PositionComponent.class).get());
+        fish       = engine.getEntitiesFor(FishWorld.FISH);
+    }
+
+    @Override
+    void process() {
+        for (int i = 0; i < positioned.size(); i++) {
+            final PositionComponent position = positions.get(positioned.get(i));
+            position.previousX = position.x;
+            position.previousY = position.y;
+        }
+        for (int i = 0; i < fish.size(); i++) {
+            final Entity entity = fish.get(i);
+            switch (fishes.get(entity).input) {
+                case FishWorld.INPUT_LEFT:
+                    moveSideways(entity, -1);
+                    break;
+                case FishWorld.INPUT_RIGHT:
+                    moveSideways(entity, 1);
+                    break;
+            }
+            if (world.isMovingUp()) {
+                moveUp(entity);
+            }
+        }
+    }
+
+    /*
+        This function moves a fish one cell to the left or the right, wrapping around the edges of
+        the screen. If the fish would move into an obstacle, it won't move.
+     */
+    void moveSideways(final Entity entity, final int step) {
+        if (!world.canMove()) {
+            return;
+        }
+        final PositionComponent position = positions.get(entity);
+        final int newX = (position.x + step + ChunkGenerator.WIDTH) % ChunkGenerator.WIDTH;
+        if (!world.hitsObstacleOnMap(newX, position.y)) {
+            position.x = newX;
+            directions.get(entity).direction = step < 0 ? 'l' : 'r';
+        }
+    }
+
+    /*
+        This function moves a fish up and the map with it. If the fish would move into an obstacle,
+        it won't move and the world notes that it was blocked.
+     */
+    private void moveUp(final Entity entity) {
+        final PositionComponent position = positions.get(entity);
+        final boolean blocked = world.hitsObstacleOnMap(position.x, position.y + 1);
+        world.setBlocked(blocked);
+        if (!blocked) {
+            position.y++;
+            directions.get(entity).direction = 'u';
+            world.scrollMap();
+        }
+    }
+}
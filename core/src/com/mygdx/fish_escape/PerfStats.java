@@ -0,0 +1,285 @@
+package com.mygdx.fish_escape;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * This class collects how long the parts of a frame take, and a few counts per frame, into
+ * histograms. Each histogram has 8 buckets for every power of two, so recording a value is a few
+ * shifts and an increment, and the percentiles it reports are within an eighth of the real ones.
+ * A disabled PerfStats doesn't even read the clock, so the game can always call it.
+ */
+public class PerfStats {
+    // What is timed, in nanoseconds
+    public static final int FRAME            = 0;
+    public static final int DRAW_BACKGROUND  = 1;
+    public static final int DRAW_COINS       = 2;
+    public static final int DRAW_FISH        = 3;
+    public static final int DRAW_ENEMIES     = 4;
+    public static final int DRAW_OBSTACLES   = 5;
+    public static final int DRAW_FINISH_LINE = 6;
+    public static final int DRAW_SCORE       = 7;
+    public static final int DRAW_END_SCREEN  = 8;
+    public static final int DRAW_BUTTONS     = 9;
+    public static final int MOVE_UP          = 10;
+    // The time the AI system takes to move the sharks
+    public static final int MOVE_ENEMIES     = 11;
+    // What is counted every frame
+    public static final int DRAW_CALLS       = 12;
+    public static final int TEXTURE_BINDS    = 13;
+    public static final int GC_COUNT         = 14;
+    public static final int GC_TIME          = 15;
+    // The time from the start of one frame to the start of the next, in nanoseconds
+    public static final int FRAME_INTERVAL   = 16;
+    // The time from a tap to the end of the frame that first shows it, in nanoseconds
+    public static final int INPUT_LATENCY    = 17;
+    // The time the other systems of the world take every tick, in nanoseconds
+    public static final int MOVEMENT_SYSTEM  = 18;
+    public static final int PICKUP_SYSTEM    = 19;
+    public static final int COLLISION_SYSTEM = 20;
+    // The time the route solver takes when the map scrolls, in nanoseconds
+    public static final int ROUTE_SOLVER     = 21;
+    // How many frames were drawn in a minute, counted every minute
+    public static final int FRAMES_PER_MINUTE = 22;
+    private static final String names[] = {
+            "frame", "drawBackground", "drawCoins", "drawFish", "drawEnemies", "drawObstacles",
+            "drawFinishLine", "drawScore", "drawEndScreen", "drawButtons", "moveUp", "moveEnemies",
+            "drawCalls", "textureBinds", "gcCount", "gcTime", "frameInterval", "inputLatency",
+            "movementSystem", "pickupSystem", "collisionSystem", "routeSolver",
+            "framesPerMinute"};
+    // Something that doesn't want to be measured can use this
+    public static final PerfStats DISABLED = new PerfStats(false);
+    private static final int subBucketBits = 3;
+    private static final int subBuckets = 1 << subBucketBits;
+    private static final int numberOfBuckets = (64 - subBucketBits + 1) * subBuckets;
+    private final boolean enabled;
+    private final long counts[][] = new long[names.length][];
+    private final long totals[] = new long[names.length];
+    private final long maximums[] = new long[names.length];
+    // The garbage collectors, if this platform can tell about them
+    private GarbageCollectorMXBean collectors[];
+    private long lastGcCount;
+    private long lastGcTime;
+
+    public PerfStats(final boolean enabled) {
+        this.enabled = enabled;
+        if (enabled) {
+            for (int i = 0; i < names.length; i++) {
+                counts[i] = new long[numberOfBuckets];
+            }
+            try {
+                collectors = ManagementFactory.getGarbageCollectorMXBeans()
+                        .toArray(new GarbageCollectorMXBean[0]);
+            } catch (Throwable e) {
+                // Android doesn't have java.lang.management
+                collectors = null;
+            }
+            lastGcCount = gcCount();
+            lastGcTime  = gcTime();
+        }
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    public static int getNumberOfProbes() { return names.length; }
+
+    public static String getName(final int probe) { return names[probe]; }
+
+    /*
+        This function returns the time to pass to stop, or 0 if nothing is being measured.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /*
+        This function records how long it's been since start.
+     */
+    public void stop(final int probe, final long start) {
+        if (enabled) {
+            record(probe, System.nanoTime() - start);
+        }
+    }
+
+    /*
+        This function records how long it's been since start, and returns the time to pass on to
+        the next stop or lap. It reads the clock once for two steps in a row.
+     */
+    public long lap(final int probe, final long start) {
+        if (!enabled) {
+            return 0;
+        }
+        final long now = System.nanoTime();
+        record(probe, now - start);
+        return now;
+    }
+
+    /*
+        This function records a value, like a time or how many draw calls a frame made.
+     */
+    public void record(final int probe, long value) {
+        if (!enabled) {
+            return;
+        }
+        if (value < 0) {
+            value = 0;
+        }
+        counts[probe][bucket(value)]++;
+        totals[probe] += value;
+        if (value > maximums[probe]) {
+            maximums[probe] = value;
+        }
+    }
+
+    /*
+        This function records how many garbage collections ran since the last call and how long
+        they took. It's meant to be called once per frame.
+     */
+    public void recordGarbageCollection() {
+        if (!enabled || collectors == null) {
+            return;
+        }
+        final long count = gcCount();
+        final long time  = gcTime();
+        record(GC_COUNT, count - lastGcCount);
+        record(GC_TIME, (time - lastGcTime) * 1000000);
+        lastGcCount = count;
+        lastGcTime  = time;
+    }
+
+    /*
+        This function forgets everything that was recorded.
+     */
+    public void reset() {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < names.length; i++) {
+            for (int bucket = 0; bucket < numberOfBuckets; bucket++) {
+                counts[i][bucket] = 0;
+            }
+            totals[i]   = 0;
+            maximums[i] = 0;
+        }
+    }
+
+    public long getCount(final int probe) {
+        if (!enabled) {
+            return 0;
+        }
+        long count = 0;
+        for (int bucket = 0; bucket < numberOfBuckets; bucket++) {
+            count += counts[probe][bucket];
+        }
+        return count;
+    }
+
+    public long getMean(final int probe) {
+        final long count = getCount(probe);
+        return count == 0 ? 0 : totals[probe] / count;
+    }
+
+    public long getMax(final int probe) { return maximums[probe]; }
+
+    public long getTotal(final int probe) { return totals[probe]; }
+
+    /*
+        This function returns the value that the fraction of the values recorded are at or under,
+        rounded up to the end of its bucket.
+     */
+    public long getPercentile(final int probe, final double fraction) {
+        final long count = getCount(probe);
+        if (count == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(count * fraction));
+        long seen = 0;
+        for (int bucket = 0; bucket < numberOfBuckets; bucket++) {
+            seen += counts[probe][bucket];
+            if (seen >= target) {
+                return Math.min(bucketStart(bucket + 1) - 1, maximums[probe]);
+            }
+        }
+        return maximums[probe];
+    }
+
+    /*
+        This function writes every histogram as a line of comma separated values, after a header.
+     */
+    public String toCsv() {
+        final StringBuilder builder = new StringBuilder("name,count,mean,p50,p90,p99,max\n");
+        for (int probe = 0; probe < names.length; probe++) {
+            builder.append(names[probe])
+                    .append(',').append(getCount(probe))
+                    .append(',').append(getMean(probe))
+                    .append(',').append(getPercentile(probe, .5))
+                    .append(',').append(getPercentile(probe, .9))
+                    .append(',').append(getPercentile(probe, .99))
+                    .append(',').append(getMax(probe))
+                    .append('\n');
+        }
+        return builder.toString();
+    }
+
+    /*
+        This function writes every histogram as a JSON object, keyed by its name.
+     */
+    public String toJson() {
+        final StringBuilder builder = new StringBuilder("{\n");
+        for (int probe = 0; probe < names.length; probe++) {
+            builder.append("  \"").append(names[probe]).append("\": {")
+                    .append("\"count\": ").append(getCount(probe))
+                    .append(", \"mean\": ").append(getMean(probe))
+                    .append(", \"p50\": ").append(getPercentile(probe, .5))
+                    .append(", \"p90\": ").append(getPercentile(probe, .9))
+                    .append(", \"p99\": ").append(getPercentile(probe, .99))
+                    .append(", \"max\": ").append(getMax(probe))
+                    .append(probe < names.length - 1 ? "},\n" : "}\n");
+        }
+        return builder.append("}\n").toString();
+    }
+
+    /*
+        This function finds the bucket of a value. Values under 8 have a bucket each, and every
+        power of two above that is split into 8 buckets.
+     */
+    private static int bucket(final long value) {
+        if (value < subBuckets) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - subBucketBits)) & (subBuckets - 1);
+        return (exponent - subBucketBits + 1) * subBuckets + subBucket;
+    }
+
+    /*
+        This function returns the smallest value that goes into a bucket.
+     */
+    private static long bucketStart(final int bucket) {
+        if (bucket < subBuckets) {
+            return bucket;
+        }
+        final int exponent = bucket / subBuckets + subBucketBits - 1;
+        return (long) (subBuckets + bucket % subBuckets) << (exponent - subBucketBits);
+    }
+
+    private long gcCount() {
+        long count = 0;
+        if (collectors != null) {
+            for (GarbageCollectorMXBean collector : collectors) {
+                count += Math.max(0, collector.getCollectionCount());
+            }
+        }
+        return count;
+    }
+
+    private long gcTime() {
+        long time = 0;
+        if (collectors != null) {
+            for (GarbageCollectorMXBean collector : collectors) {
+                time += Math.max(0, collector.getCollectionTime());
+            }
+        }
+        return time;
+    }
+}
@@ -0,0 +1,62 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.utils.ImmutableArray;
+
+/**
+ * This system has the fish take the crackers in the cells it swam into. A fish can swim sideways
+ * and then up in the same tick, so when it moved up the cell below it is checked as well. If it
+ * didn't swim sideways first, it was already in that cell and left nothing there.
+ */
+class PickupSystem extends TimedSystem {
+    private final FishWorld world;
+    private final ComponentMapper<PositionComponent> positions =
+            ComponentMapper.getFor(PositionComponent.class);
+    private final ComponentMapper<CrackerComponent> crackerComponents =
+            ComponentMapper.getFor(CrackerComponent.class);
+    private ImmutableArray<Entity> fish;
+    private ImmutableArray<Entity> crackers;
+
+    PickupSystem(final FishWorld world, final int priority) {
+        super(priority, PerfStats.PICKUP_SYSTEM);
+        this.world = world;
+    }
+
+    @Override
+    public void addedToEngine(final Engine engine) {
+        fish     = engine.getEntitiesFor(FishWorld.FISH);
+        crackers = engine.getEntitiesFor(FishWorld.CRACKERS);
+    }
+
+    @Override
+    void process() {
+        for (int i = 0; i < fish.size(); i++) {
+            final PositionComponent position = positions.get(fish.get(i));
+            if (position.y != position.previousY) {
+                takeCrackers(position.x, position.previousY);
+            }
+            takeCrackers(position.x, position.y);
+        }
+    }
+
+    /*
+        This function takes every cracker in a cell of the map that hasn't been taken yet.
+     */
+    void takeCrackers(final int x, final int y) {
+        // Most cells of the map aren't in a row that can have crackers
+        if (!world.hasCrackers(y)) {
+            return;
+        }
+        for (int i = 0; i < crackers.size(); i++) {
+            final Entity entity = crackers.get(i);
+            final PositionComponent position = positions.get(entity);
+            final CrackerComponent cracker = crackerComponents.get(entity);
+            if (position.x == x && position.y == y && !cracker.taken) {
+                cracker.taken = true;
+                world.addPoint();
+            }
+        }
+    }
+}
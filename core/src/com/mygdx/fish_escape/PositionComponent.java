@@ -0,0 +1,25 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.ashley.core.Component;
+
+/**
+ * This component is the cell something is in. The cells are counted from the bottom of the map
+ * instead of the screen, so nothing has to move when the map scrolls. Where it was before the last
+ * tick is kept, so it can be drawn part of the way between two ticks.
+ */
+public class PositionComponent implements Component {
+    int x;
+    int y;
+    int previousX;
+    int previousY;
+
+    /*
+        This function puts it in a cell without it having moved there.
+     */
+    void set(final int x, final int y) {
+        this.x    = x;
+        this.y    = y;
+        previousX = x;
+        previousY = y;
+    }
+}
@@ -0,0 +1,255 @@
+package com.mygdx.fish_escape;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * This class is one player of a race run by a RaceServer. The taps of the player are numbered and
+ * sent in every input packet until a snapshot says the server has them, so a lost packet only
+ * delays a tap. Every tap says which tick it's played on, and every input packet says how many
+ * ticks the player played, which the server doesn't play the player's world past. Every input packet also says which snapshot was the last one to arrive, and the
+ * server writes the next snapshots as the changes from that one, so the last few snapshots are
+ * kept to read them against.
+ *
+ * The client can talk to the server over its own channel, with connect, send and poll. Something
+ * that plays many players at once can share one channel between them instead, writing the packets
+ * with writeJoin and writeInput and handing the packets that arrive to receive.
+ */
+public class RaceClient {
+    private final int nonce;
+    private DatagramChannel channel;
+    private final ByteBuffer sendBuffer    = ByteBuffer.allocate(RaceProtocol.MAX_PACKET);
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate(RaceProtocol.MAX_PACKET);
+    // Who the server said this player is
+    private int player = -1;
+    private int token = 0;
+    private int race = 0;
+    private int slot = 0;
+    private long seed = 0;
+    private boolean rejected = false;
+    // The snapshots that arrived last, by sequence
+    private RaceSnapshot snapshots[];
+    private RaceSnapshot latest;
+    private int latestSequence = 0;
+    private long snapshotsReceived = 0;
+    private long snapshotsDropped = 0;
+    private long bytesReceived = 0;
+    // The taps the server doesn't have yet and their ticks, the first of them numbered firstTap
+    private final int taps[]     = new int[RaceProtocol.MAX_INPUTS];
+    private final int tapTicks[] = new int[RaceProtocol.MAX_INPUTS];
+    private int firstTap = 1;
+    private int numberOfTaps = 0;
+    private long droppedTaps = 0;
+    // How many ticks the player played
+    private int frames = 0;
+
+    /*
+        This constructor creates a player that hasn't joined yet. The nonce tells the replies to
+        its join apart from those of other players on the same channel.
+     */
+    public RaceClient(final int nonce) {
+        this.nonce = nonce;
+    }
+
+    /*
+        This function opens a channel of the player's own to the server.
+     */
+    public void connect(final InetSocketAddress server) throws IOException {
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(server);
+    }
+
+    public void close() throws IOException {
+        if (channel != null) {
+            if (player >= 0) {
+                sendBuffer.clear();
+                writeLeave(sendBuffer);
+                sendBuffer.flip();
+                channel.write(sendBuffer);
+            }
+            channel.close();
+        }
+    }
+
+    /*
+        This function sends the join until the server answers, and the taps and the last snapshot
+        that arrived after that. Call it every few frames; the taps go out again every time.
+     */
+    public void send() throws IOException {
+        sendBuffer.clear();
+        if (player < 0) {
+            writeJoin(sendBuffer);
+        } else {
+            writeInput(sendBuffer);
+        }
+        sendBuffer.flip();
+        channel.write(sendBuffer);
+    }
+
+    /*
+        This function reads every packet that arrived on the channel without waiting.
+     */
+    public void poll() throws IOException {
+        while (true) {
+            receiveBuffer.clear();
+            if (channel.receive(receiveBuffer) == null) {
+                return;
+            }
+            receiveBuffer.flip();
+            receive(receiveBuffer);
+        }
+    }
+
+    /*
+        This function has the fish swim left or right on the tick. The ticks of the taps have to go
+        up, one tap per tick at most. The tap is dropped if too many of them are waiting for the
+        server already.
+     */
+    public boolean tap(final int input, final int tick) {
+        if (numberOfTaps == taps.length) {
+            droppedTaps++;
+            return false;
+        }
+        taps[numberOfTaps]     = input;
+        tapTicks[numberOfTaps] = tick;
+        numberOfTaps++;
+        return true;
+    }
+
+    /*
+        This function returns whether another tap fits in with the ones waiting for the server.
+     */
+    public boolean canTap() { return numberOfTaps < taps.length; }
+
+    /*
+        This function says how many ticks the player played, with every tap before that tapped.
+        Something that doesn't play the world itself can say Integer.MAX_VALUE, and the server
+        plays it as the race goes, its taps on the next tick.
+     */
+    public void setFrames(final int frames) {
+        this.frames = frames;
+    }
+
+    public void writeJoin(final ByteBuffer buffer) {
+        buffer.put((byte) RaceProtocol.JOIN);
+        buffer.put((byte) RaceProtocol.VERSION);
+        RaceProtocol.putVarint(buffer, nonce);
+    }
+
+    public void writeInput(final ByteBuffer buffer) {
+        buffer.put((byte) RaceProtocol.INPUT);
+        RaceProtocol.putVarint(buffer, player);
+        buffer.putInt(token);
+        RaceProtocol.putVarint(buffer, latestSequence);
+        RaceProtocol.putVarint(buffer, frames);
+        RaceProtocol.putVarint(buffer, firstTap);
+        buffer.put((byte) numberOfTaps);
+        for (int i = 0; i < numberOfTaps; i++) {
+            buffer.put((byte) taps[i]);
+            RaceProtocol.putVarint(buffer, tapTicks[i]);
+        }
+    }
+
+    public void writeLeave(final ByteBuffer buffer) {
+        buffer.put((byte) RaceProtocol.LEAVE);
+        RaceProtocol.putVarint(buffer, player);
+        buffer.putInt(token);
+    }
+
+    /*
+        This function reads a packet from the server. Snapshots that arrive out of order, or whose
+        baseline isn't kept anymore, are dropped; the server sends a newer one soon enough.
+     */
+    public void receive(final ByteBuffer buffer) {
+        bytesReceived += buffer.remaining();
+        final int type = buffer.get();
+        switch (type) {
+            case RaceProtocol.JOINED:
+                if (RaceProtocol.getVarint(buffer) == nonce && player < 0) {
+                    player = RaceProtocol.getVarint(buffer);
+                    token  = buffer.getInt();
+                    race   = RaceProtocol.getVarint(buffer);
+                    slot   = buffer.get();
+                    final int numberOfSharks = buffer.get();
+                    seed   = buffer.getLong();
+                    snapshots = new RaceSnapshot[RaceProtocol.HISTORY];
+                    for (int i = 0; i < snapshots.length; i++) {
+                        snapshots[i] = new RaceSnapshot(numberOfSharks);
+                    }
+                }
+                break;
+            case RaceProtocol.REJECTED:
+                if (RaceProtocol.getVarint(buffer) == nonce) {
+                    rejected = true;
+                }
+                break;
+            case RaceProtocol.SNAPSHOT:
+                if (RaceProtocol.getVarint(buffer) == player && snapshots != null) {
+                    readSnapshot(buffer);
+                }
+                break;
+        }
+    }
+
+    private void readSnapshot(final ByteBuffer buffer) {
+        final int sequence = RaceProtocol.getVarint(buffer);
+        final int baselineSequence = RaceProtocol.getVarint(buffer);
+        RaceSnapshot baseline = null;
+        if (baselineSequence != 0) {
+            baseline = snapshots[baselineSequence % snapshots.length];
+            if (baseline.getSequence() != baselineSequence) {
+                snapshotsDropped++;
+                return;
+            }
+        }
+        if (sequence <= latestSequence) {
+            snapshotsDropped++;
+            return;
+        }
+        final RaceSnapshot snapshot = snapshots[sequence % snapshots.length];
+        snapshot.read(buffer, baseline, sequence);
+        latest         = snapshot;
+        latestSequence = sequence;
+        snapshotsReceived++;
+        // Forget the taps the server has
+        final int applied = snapshot.getInputSequence() - firstTap + 1;
+        if (applied > 0) {
+            final int kept = Math.max(numberOfTaps - applied, 0);
+            System.arraycopy(taps, numberOfTaps - kept, taps, 0, kept);
+            System.arraycopy(tapTicks, numberOfTaps - kept, tapTicks, 0, kept);
+            firstTap    += numberOfTaps - kept;
+            numberOfTaps = kept;
+        }
+    }
+
+    public boolean isJoined() { return player >= 0; }
+
+    public boolean isRejected() { return rejected; }
+
+    public int getPlayer() { return player; }
+
+    public int getRace() { return race; }
+
+    public int getSlot() { return slot; }
+
+    /*
+        This function returns the seed of the race's course, the same for every player in it.
+     */
+    public long getSeed() { return seed; }
+
+    /*
+        This function returns the last snapshot that arrived, or null before the first one.
+     */
+    public RaceSnapshot getSnapshot() { return latest; }
+
+    public long getSnapshotsReceived() { return snapshotsReceived; }
+
+    public long getSnapshotsDropped() { return snapshotsDropped; }
+
+    public long getBytesReceived() { return bytesReceived; }
+
+    public long getDroppedTaps() { return droppedTaps; }
+}
@@ -0,0 +1,73 @@
+package com.mygdx.fish_escape;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class holds what the race server and its clients say to each other over UDP. Every packet
+ * starts with its type. Numbers that are usually small are written as varints, 7 bits per byte
+ * with the top bit set while more bytes follow, and numbers that can be negative are zigzagged
+ * first so small negative numbers stay short.
+ *
+ * A client joins with a nonce of its own choosing, which the server sends back along with the
+ * player and token that go in every packet after that. The server sends a snapshot of the race
+ * every few ticks, written as the changes from the last snapshot the client said it got.
+ *
+ * Every tap is sent with the tick it's played on, and the client says how many ticks it played.
+ * The server plays a player's world no further than that, so every tap is played on its tick there
+ * too and the two worlds stay the same.
+ */
+public final class RaceProtocol {
+    public static final int VERSION = 2;
+    // Client to server
+    public static final int JOIN   = 1;
+    public static final int INPUT  = 2;
+    public static final int LEAVE  = 3;
+    // Server to client
+    public static final int JOINED   = 4;
+    public static final int SNAPSHOT = 5;
+    public static final int REJECTED = 6;
+    // How many taps an input packet repeats, in case the packets before it were lost
+    public static final int MAX_INPUTS = 8;
+    // How many snapshots are kept to be the baseline of the next one
+    public static final int HISTORY = 16;
+    // Big enough for any packet, and small enough that it's never fragmented
+    public static final int MAX_PACKET = 512;
+
+    private RaceProtocol() {
+    }
+
+    /*
+        This function writes a number that isn't negative in as few bytes as it needs.
+     */
+    public static void putVarint(final ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static int getVarint(final ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /*
+        This function writes a number that may be negative, so -1 takes one byte instead of five.
+     */
+    public static void putSignedVarint(final ByteBuffer buffer, final int value) {
+        putVarint(buffer, (value << 1) ^ (value >> 31));
+    }
+
+    public static int getSignedVarint(final ByteBuffer buffer) {
+        final int value = getVarint(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
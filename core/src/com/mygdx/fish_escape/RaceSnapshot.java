@@ -0,0 +1,482 @@
+package com.mygdx.fish_escape;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class is what a player of a race sees at one tick: their own world, and how far along the
+ * other players are. The server captures one from the player's world every few ticks and keeps
+ * the last few, so each one can be sent as the changes from one the client already has. Most
+ * ticks only the frame changes; a row is only sent when the map scrolled a new one in, and a
+ * shark only when it moved, so a snapshot is usually a handful of bytes.
+ *
+ * Everything is kept in cells of the map rather than the screen, so scrolling doesn't change
+ * where anything is. The client turns a snapshot back into cells of the screen with the scroll.
+ */
+public class RaceSnapshot {
+    public static final int MAX_PLAYERS = 8;
+    // Where the race is at
+    public static final int RACE_WAITING = 0;
+    public static final int RACE_RUNNING = 1;
+    public static final int RACE_OVER    = 2;
+    // Where each player is at
+    public static final int PLAYER_SWIMMING = 0;
+    public static final int PLAYER_EATEN    = 1;
+    public static final int PLAYER_FINISHED = 2;
+    public static final int PLAYER_EMPTY    = 3;
+    // Which parts of a snapshot were sent
+    private static final int changedFish     = 1;
+    private static final int changedRace     = 2;
+    private static final int changedPlayers  = 4;
+    private static final int changedRows     = 8;
+    private static final int changedCrackers = 16;
+    private static final int changedSharks   = 32;
+    private final int numberOfRows     = 6;
+    private final int obstaclesPerRow  = 4;
+    private final int crackersPerRow   = 3;
+    private final int numberOfObstacles = numberOfRows * obstaclesPerRow;
+    private final int numberOfCrackers  = numberOfRows * crackersPerRow;
+    private final int numberOfSharks;
+    private int sequence = 0;
+    private int frame = 0;
+    // The last tap of the player the server has
+    private int inputSequence = 0;
+    // The race
+    private int raceStatus = RACE_WAITING;
+    private int numberOfPlayers = 0;
+    private final int playerMovesLeft[] = new int[MAX_PLAYERS];
+    private final int playerX[]         = new int[MAX_PLAYERS];
+    private final int playerStatus[]    = new int[MAX_PLAYERS];
+    private final int playerPoints[]    = new int[MAX_PLAYERS];
+    // The player's fish
+    private int scroll = 0;
+    private int fishX = 0;
+    private int fishY = 0;
+    private char fishDirection = 'u';
+    private int movesLeft = 0;
+    private int points = 0;
+    private int deathCause = FishWorld.DEATH_NONE;
+    // The rows of obstacles and crackers
+    private final int rowY[]           = new int[numberOfRows];
+    private final int obstacleX[]      = new int[numberOfObstacles];
+    private final int obstacleWidth[]  = new int[numberOfObstacles];
+    private final int obstacleHeight[] = new int[numberOfObstacles];
+    private final int crackerX[]       = new int[numberOfCrackers];
+    // One bit per cracker that was taken or is hidden
+    private int crackersTaken = 0;
+    // The sharks
+    private final int sharkX[];
+    private final int sharkY[];
+    private final char sharkDirection[];
+
+    public RaceSnapshot(final int numberOfSharks) {
+        if (numberOfSharks > 31) {
+            throw new IllegalArgumentException("At most 31 sharks fit in a snapshot");
+        }
+        this.numberOfSharks = numberOfSharks;
+        sharkX         = new int[numberOfSharks];
+        sharkY         = new int[numberOfSharks];
+        sharkDirection = new char[numberOfSharks];
+    }
+
+    /*
+        This function records the player's world as it is now.
+     */
+    public void capture(final FishWorld world, final int sequence, final int inputSequence) {
+        this.sequence      = sequence;
+        this.inputSequence = inputSequence;
+        frame         = world.getFrames();
+        scroll        = world.getScroll();
+        fishX         = world.getFishX();
+        fishY         = world.getFishY() + scroll;
+        fishDirection = world.getFishDirection();
+        movesLeft     = world.getMovesLeft();
+        points        = world.getPoints();
+        deathCause    = world.getDeathCause();
+        for (int row = 0; row < numberOfRows; row++) {
+            rowY[row] = world.getObstacleY(row * obstaclesPerRow) + scroll;
+        }
+        for (int i = 0; i < numberOfObstacles; i++) {
+            obstacleX[i]      = world.getObstacleX(i);
+            obstacleWidth[i]  = world.getObstacleWidth(i);
+            obstacleHeight[i] = world.getObstacleHeight(i);
+        }
+        crackersTaken = 0;
+        for (int i = 0; i < numberOfCrackers; i++) {
+            crackerX[i] = world.getCrackerX(i);
+            if (world.isCrackerTaken(i)) {
+                crackersTaken |= 1 << i;
+            }
+        }
+        for (int i = 0; i < numberOfSharks; i++) {
+            sharkX[i]         = world.getEnemyX(i);
+            sharkY[i]         = world.getEnemyY(i) + scroll;
+            sharkDirection[i] = world.getEnemyDirection(i);
+        }
+    }
+
+    /*
+        This function records where the race is at. Every slot of the race is set with setPlayer,
+        the player's own as well; a slot nobody is in is PLAYER_EMPTY.
+     */
+    public void setRace(final int raceStatus, final int numberOfPlayers) {
+        this.raceStatus      = raceStatus;
+        this.numberOfPlayers = numberOfPlayers;
+    }
+
+    public void setPlayer(final int slot, final int movesLeft, final int x, final int status,
+                          final int points) {
+        playerMovesLeft[slot] = movesLeft;
+        playerX[slot]         = x;
+        playerStatus[slot]    = status;
+        playerPoints[slot]    = points;
+    }
+
+    /*
+        This function writes the snapshot as the changes from the baseline, or all of it when
+        there's no baseline.
+     */
+    public void write(final ByteBuffer buffer, final RaceSnapshot baseline) {
+        final boolean full = baseline == null;
+        final int flagsPosition = buffer.position();
+        int flags = 0;
+        buffer.put((byte) 0);
+        RaceProtocol.putVarint(buffer, frame);
+        RaceProtocol.putVarint(buffer, inputSequence);
+        if (full || scroll != baseline.scroll || fishX != baseline.fishX || fishY != baseline.fishY
+                || fishDirection != baseline.fishDirection || movesLeft != baseline.movesLeft
+                || points != baseline.points || deathCause != baseline.deathCause) {
+            flags |= changedFish;
+            RaceProtocol.putVarint(buffer, scroll);
+            RaceProtocol.putSignedVarint(buffer, fishY - scroll);
+            buffer.put(packCell(fishX, fishDirection));
+            RaceProtocol.putVarint(buffer, movesLeft);
+            RaceProtocol.putVarint(buffer, points);
+            buffer.put((byte) deathCause);
+        }
+        if (full || raceStatus != baseline.raceStatus
+                || numberOfPlayers != baseline.numberOfPlayers) {
+            flags |= changedRace;
+            buffer.put((byte) raceStatus);
+            buffer.put((byte) numberOfPlayers);
+        }
+        int players = 0;
+        for (int slot = 0; slot < numberOfPlayers; slot++) {
+            if (full || playerMovesLeft[slot] != baseline.playerMovesLeft[slot]
+                    || playerX[slot] != baseline.playerX[slot]
+                    || playerStatus[slot] != baseline.playerStatus[slot]
+                    || playerPoints[slot] != baseline.playerPoints[slot]) {
+                players |= 1 << slot;
+            }
+        }
+        if (players != 0) {
+            flags |= changedPlayers;
+            buffer.put((byte) players);
+            for (int slot = 0; slot < numberOfPlayers; slot++) {
+                if ((players & (1 << slot)) != 0) {
+                    RaceProtocol.putVarint(buffer, playerMovesLeft[slot]);
+                    buffer.put((byte) playerX[slot]);
+                    buffer.put((byte) playerStatus[slot]);
+                    RaceProtocol.putVarint(buffer, playerPoints[slot]);
+                }
+            }
+        }
+        int rows = 0;
+        for (int row = 0; row < numberOfRows; row++) {
+            if (full || !sameRow(baseline, row)) {
+                rows |= 1 << row;
+            }
+        }
+        if (rows != 0) {
+            flags |= changedRows;
+            buffer.put((byte) rows);
+            for (int row = 0; row < numberOfRows; row++) {
+                if ((rows & (1 << row)) != 0) {
+                    writeRow(buffer, row);
+                }
+            }
+        }
+        if (full || crackersTaken != baseline.crackersTaken) {
+            flags |= changedCrackers;
+            RaceProtocol.putVarint(buffer, crackersTaken);
+        }
+        int sharks = 0;
+        for (int i = 0; i < numberOfSharks; i++) {
+            if (full || sharkX[i] != baseline.sharkX[i] || sharkY[i] != baseline.sharkY[i]
+                    || sharkDirection[i] != baseline.sharkDirection[i]) {
+                sharks |= 1 << i;
+            }
+        }
+        if (sharks != 0) {
+            flags |= changedSharks;
+            RaceProtocol.putVarint(buffer, sharks);
+            for (int i = 0; i < numberOfSharks; i++) {
+                if ((sharks & (1 << i)) != 0) {
+                    buffer.put(packCell(sharkX[i], sharkDirection[i]));
+                    RaceProtocol.putSignedVarint(buffer, sharkY[i] - scroll);
+                }
+            }
+        }
+        buffer.put(flagsPosition, (byte) flags);
+    }
+
+    /*
+        This function reads a snapshot written as the changes from the baseline, which has to be
+        the same one it was written against. The sequence isn't part of what's written.
+     */
+    public void read(final ByteBuffer buffer, final RaceSnapshot baseline, final int sequence) {
+        if (baseline != null) {
+            copy(baseline);
+        }
+        this.sequence = sequence;
+        final int flags = buffer.get();
+        frame         = RaceProtocol.getVarint(buffer);
+        inputSequence = RaceProtocol.getVarint(buffer);
+        if ((flags & changedFish) != 0) {
+            scroll = RaceProtocol.getVarint(buffer);
+            fishY  = RaceProtocol.getSignedVarint(buffer) + scroll;
+            final int cell = buffer.get();
+            fishX         = cellX(cell);
+            fishDirection = cellDirection(cell);
+            movesLeft  = RaceProtocol.getVarint(buffer);
+            points     = RaceProtocol.getVarint(buffer);
+            deathCause = buffer.get();
+        }
+        if ((flags & changedRace) != 0) {
+            raceStatus      = buffer.get();
+            numberOfPlayers = Math.min(buffer.get(), MAX_PLAYERS);
+        }
+        if ((flags & changedPlayers) != 0) {
+            final int players = buffer.get() & 0xFF;
+            for (int slot = 0; slot < numberOfPlayers; slot++) {
+                if ((players & (1 << slot)) != 0) {
+                    playerMovesLeft[slot] = RaceProtocol.getVarint(buffer);
+                    playerX[slot]         = buffer.get();
+                    playerStatus[slot]    = buffer.get();
+                    playerPoints[slot]    = RaceProtocol.getVarint(buffer);
+                }
+            }
+        }
+        if ((flags & changedRows) != 0) {
+            final int rows = buffer.get();
+            for (int row = 0; row < numberOfRows; row++) {
+                if ((rows & (1 << row)) != 0) {
+                    readRow(buffer, row);
+                }
+            }
+        }
+        if ((flags & changedCrackers) != 0) {
+            crackersTaken = RaceProtocol.getVarint(buffer);
+        }
+        if ((flags & changedSharks) != 0) {
+            final int sharks = RaceProtocol.getVarint(buffer);
+            for (int i = 0; i < numberOfSharks; i++) {
+                if ((sharks & (1 << i)) != 0) {
+                    final int cell = buffer.get();
+                    sharkX[i]         = cellX(cell);
+                    sharkDirection[i] = cellDirection(cell);
+                    sharkY[i]         = RaceProtocol.getSignedVarint(buffer) + scroll;
+                }
+            }
+        }
+    }
+
+    /*
+        This function makes this snapshot the same as another one.
+     */
+    public void copy(final RaceSnapshot other) {
+        sequence        = other.sequence;
+        frame           = other.frame;
+        inputSequence   = other.inputSequence;
+        raceStatus      = other.raceStatus;
+        numberOfPlayers = other.numberOfPlayers;
+        System.arraycopy(other.playerMovesLeft, 0, playerMovesLeft, 0, MAX_PLAYERS);
+        System.arraycopy(other.playerX, 0, playerX, 0, MAX_PLAYERS);
+        System.arraycopy(other.playerStatus, 0, playerStatus, 0, MAX_PLAYERS);
+        System.arraycopy(other.playerPoints, 0, playerPoints, 0, MAX_PLAYERS);
+        scroll        = other.scroll;
+        fishX         = other.fishX;
+        fishY         = other.fishY;
+        fishDirection = other.fishDirection;
+        movesLeft     = other.movesLeft;
+        points        = other.points;
+        deathCause    = other.deathCause;
+        System.arraycopy(other.rowY, 0, rowY, 0, numberOfRows);
+        System.arraycopy(other.obstacleX, 0, obstacleX, 0, numberOfObstacles);
+        System.arraycopy(other.obstacleWidth, 0, obstacleWidth, 0, numberOfObstacles);
+        System.arraycopy(other.obstacleHeight, 0, obstacleHeight, 0, numberOfObstacles);
+        System.arraycopy(other.crackerX, 0, crackerX, 0, numberOfCrackers);
+        crackersTaken = other.crackersTaken;
+        System.arraycopy(other.sharkX, 0, sharkX, 0, numberOfSharks);
+        System.arraycopy(other.sharkY, 0, sharkY, 0, numberOfSharks);
+        System.arraycopy(other.sharkDirection, 0, sharkDirection, 0, numberOfSharks);
+    }
+
+    /*
+        This function checks whether two snapshots show the same thing, sequence and all.
+     */
+    public boolean sameAs(final RaceSnapshot other) {
+        if (sequence != other.sequence || inputSequence != other.inputSequence
+                || raceStatus != other.raceStatus || numberOfPlayers != other.numberOfPlayers) {
+            return false;
+        }
+        for (int slot = 0; slot < numberOfPlayers; slot++) {
+            if (playerMovesLeft[slot] != other.playerMovesLeft[slot]
+                    || playerX[slot] != other.playerX[slot]
+                    || playerStatus[slot] != other.playerStatus[slot]
+                    || playerPoints[slot] != other.playerPoints[slot]) {
+                return false;
+            }
+        }
+        return sameWorld(other);
+    }
+
+    /*
+        This function checks whether two snapshots show the player's world the same at the same
+        tick, whatever they say about the race.
+     */
+    public boolean sameWorld(final RaceSnapshot other) {
+        if (frame != other.frame || scroll != other.scroll || fishX != other.fishX
+                || fishY != other.fishY || fishDirection != other.fishDirection
+                || movesLeft != other.movesLeft || points != other.points
+                || deathCause != other.deathCause || crackersTaken != other.crackersTaken) {
+            return false;
+        }
+        for (int row = 0; row < numberOfRows; row++) {
+            if (!sameRow(other, row)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < numberOfSharks; i++) {
+            if (sharkX[i] != other.sharkX[i] || sharkY[i] != other.sharkY[i]
+                    || sharkDirection[i] != other.sharkDirection[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean sameRow(final RaceSnapshot other, final int row) {
+        if (rowY[row] != other.rowY[row]) {
+            return false;
+        }
+        for (int i = row * obstaclesPerRow; i < (row + 1) * obstaclesPerRow; i++) {
+            if (obstacleX[i] != other.obstacleX[i] || obstacleWidth[i] != other.obstacleWidth[i]
+                    || obstacleHeight[i] != other.obstacleHeight[i]) {
+                return false;
+            }
+        }
+        for (int i = row * crackersPerRow; i < (row + 1) * crackersPerRow; i++) {
+            if (crackerX[i] != other.crackerX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+        This function writes a row in 12 bytes or so: its y on the map, then the x of every
+        obstacle followed by its width and height in one byte, then the x of every cracker.
+     */
+    private void writeRow(final ByteBuffer buffer, final int row) {
+        RaceProtocol.putSignedVarint(buffer, rowY[row]);
+        for (int i = row * obstaclesPerRow; i < (row + 1) * obstaclesPerRow; i++) {
+            buffer.put((byte) obstacleX[i]);
+            buffer.put((byte) (obstacleWidth[i] | obstacleHeight[i] << 4));
+        }
+        for (int i = row * crackersPerRow; i < (row + 1) * crackersPerRow; i++) {
+            buffer.put((byte) crackerX[i]);
+        }
+    }
+
+    private void readRow(final ByteBuffer buffer, final int row) {
+        rowY[row] = RaceProtocol.getSignedVarint(buffer);
+        for (int i = row * obstaclesPerRow; i < (row + 1) * obstaclesPerRow; i++) {
+            obstacleX[i] = buffer.get();
+            final int size = buffer.get();
+            obstacleWidth[i]  = size & 0x0F;
+            obstacleHeight[i] = size >> 4;
+        }
+        for (int i = row * crackersPerRow; i < (row + 1) * crackersPerRow; i++) {
+            crackerX[i] = buffer.get();
+        }
+    }
+
+    /*
+        These functions pack the x of a fish and the way it's facing into one byte.
+     */
+    private static byte packCell(final int x, final char direction) {
+        final int facing = direction == 'l' ? 1 : direction == 'r' ? 2 : 0;
+        return (byte) (x | facing << 5);
+    }
+
+    private static int cellX(final int cell) { return cell & 0x1F; }
+
+    private static char cellDirection(final int cell) {
+        switch ((cell >> 5) & 3) {
+            case 1:
+                return 'l';
+            case 2:
+                return 'r';
+            default:
+                return 'u';
+        }
+    }
+
+    public int getSequence() { return sequence; }
+
+    public int getFrame() { return frame; }
+
+    public int getInputSequence() { return inputSequence; }
+
+    public int getRaceStatus() { return raceStatus; }
+
+    public int getNumberOfPlayers() { return numberOfPlayers; }
+
+    public int getPlayerMovesLeft(final int slot) { return playerMovesLeft[slot]; }
+
+    public int getPlayerX(final int slot) { return playerX[slot]; }
+
+    public int getPlayerStatus(final int slot) { return playerStatus[slot]; }
+
+    public int getPlayerPoints(final int slot) { return playerPoints[slot]; }
+
+    public int getScroll() { return scroll; }
+
+    public int getFishX() { return fishX; }
+
+    public int getFishY() { return fishY - scroll; }
+
+    public char getFishDirection() { return fishDirection; }
+
+    public int getMovesLeft() { return movesLeft; }
+
+    public int getPoints() { return points; }
+
+    public int getDeathCause() { return deathCause; }
+
+    public int getNumberOfObstacles() { return numberOfObstacles; }
+
+    public int getObstacleX(final int i) { return obstacleX[i]; }
+
+    public int getObstacleY(final int i) { return rowY[i / obstaclesPerRow] - scroll; }
+
+    public int getObstacleWidth(final int i) { return obstacleWidth[i]; }
+
+    public int getObstacleHeight(final int i) { return obstacleHeight[i]; }
+
+    public int getNumberOfCrackers() { return numberOfCrackers; }
+
+    public int getCrackerX(final int i) { return crackerX[i]; }
+
+    public int getCrackerY(final int i) { return rowY[i / crackersPerRow] - scroll; }
+
+    public boolean isCrackerTaken(final int i) { return (crackersTaken & (1 << i)) != 0; }
+
+    public int getNumberOfSharks() { return numberOfSharks; }
+
+    public int getSharkX(final int i) { return sharkX[i]; }
+
+    public int getSharkY(final int i) { return sharkY[i] - scroll; }
+
+    public char getSharkDirection(final int i) { return sharkDirection[i]; }
+}
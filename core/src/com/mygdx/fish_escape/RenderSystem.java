@@ -0,0 +1,174 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This system draws the entities of the world with the batch. Every family that's drawn is given
+ * its sprites, facing each way a fish can swim, and the families are drawn in the order they were
+ * added, each one timed under its own probe. Drawing happens once per frame instead of once per
+ * tick, so the engine never updates this system; the game calls draw instead.
+ */
+public class RenderSystem extends EntitySystem {
+    private final SpriteBatch batch;
+    private FishWorld world;
+    private final PerfStats perf;
+    private final float cellWidth;
+    private final float cellHeight;
+    private final List<Sprite> sprites = new ArrayList<Sprite>();
+    private final ComponentMapper<PositionComponent> positions =
+            ComponentMapper.getFor(PositionComponent.class);
+    private final ComponentMapper<DirectionComponent> directions =
+            ComponentMapper.getFor(DirectionComponent.class);
+    private final ComponentMapper<CrackerComponent> crackers =
+            ComponentMapper.getFor(CrackerComponent.class);
+
+    /*
+        This class is how every entity of a family is drawn.
+     */
+    private static class Sprite {
+        private final Family family;
+        private final TextureRegion up;
+        private final TextureRegion left;
+        private final TextureRegion right;
+        private final int probe;
+        private ImmutableArray<Entity> entities;
+
+        private Sprite(final Family family, final TextureRegion up, final TextureRegion left,
+                       final TextureRegion right, final int probe) {
+            this.family = family;
+            this.up     = up;
+            this.left   = left;
+            this.right  = right;
+            this.probe  = probe;
+        }
+    }
+
+    public RenderSystem(final SpriteBatch batch, final FishWorld world, final float cellWidth,
+                        final float cellHeight, final PerfStats perf) {
+        this.batch      = batch;
+        this.world      = world;
+        this.cellWidth  = cellWidth;
+        this.cellHeight = cellHeight;
+        this.perf       = perf;
+    }
+
+    /*
+        This function has every entity of the family drawn with the sprite that faces the way it's
+        swimming. Entities that don't swim are drawn facing up.
+     */
+    public void addSprite(final Family family, final TextureRegion up, final TextureRegion left,
+                          final TextureRegion right, final int probe) {
+        final Sprite sprite = new Sprite(family, up, left, right, probe);
+        if (getEngine() != null) {
+            sprite.entities = getEngine().getEntitiesFor(family);
+        }
+        sprites.add(sprite);
+    }
+
+    /*
+        This function has the system draw another world. It's moved to that world's engine too.
+     */
+    public void setWorld(final FishWorld world) {
+        this.world.getEngine().removeSystem(this);
+        this.world = world;
+        world.getEngine().addSystem(this);
+    }
+
+    @Override
+    public void addedToEngine(final Engine engine) {
+        for (int i = 0; i < sprites.size(); i++) {
+            sprites.get(i).entities = engine.getEntitiesFor(sprites.get(i).family);
+        }
+    }
+
+    @Override
+    public boolean checkProcessing() {
+        return false;
+    }
+
+    /*
+        This function draws every family, alpha of the way from where everything was before the
+        last tick to where it is now. It returns the time to pass on to the next lap.
+     */
+    public long draw(final float alpha, long start) {
+        final int scroll = world.getScroll();
+        final int previousScroll = world.getPreviousScroll();
+        for (int i = 0; i < sprites.size(); i++) {
+            final Sprite sprite = sprites.get(i);
+            for (int j = 0; j < sprite.entities.size(); j++) {
+                final Entity entity = sprite.entities.get(j);
+                // Crackers that were taken aren't drawn
+                final CrackerComponent cracker = crackers.get(entity);
+                if (cracker != null && cracker.taken) {
+                    continue;
+                }
+                final PositionComponent position = positions.get(entity);
+                final DirectionComponent direction = directions.get(entity);
+                batch.draw(direction == null ? sprite.up : region(sprite, direction.direction),
+                        cellWidth  * interpolate(position.previousX, position.x, alpha),
+                        cellHeight * interpolate(position.previousY - previousScroll,
+                                position.y - scroll, alpha),
+                        cellWidth,
+                        cellHeight);
+            }
+            start = perf.lap(sprite.probe, start);
+        }
+        return start;
+    }
+
+    /*
+        This function checks if anything is drawn moving until the next tick, because it or the
+        map moved in the last tick.
+     */
+    public boolean isMoving() {
+        if (world.getScroll() != world.getPreviousScroll()) {
+            return true;
+        }
+        for (int i = 0; i < sprites.size(); i++) {
+            final ImmutableArray<Entity> entities = sprites.get(i).entities;
+            for (int j = 0; j < entities.size(); j++) {
+                final PositionComponent position = positions.get(entities.get(j));
+                if (position.x != position.previousX || position.y != position.previousY) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+        This function finds where to draw something that moved from one cell of the screen to
+        another during the last tick. Something that wrapped around the screen is just drawn where
+        it is now.
+     */
+    private float interpolate(final int previous, final int current, final float alpha) {
+        if (Math.abs(current - previous) > world.getNumberOfHorizontalCells() / 2) {
+            return current;
+        }
+        return previous + (current - previous) * alpha;
+    }
+
+    /*
+        This function picks the sprite that faces the direction a fish is swimming.
+     */
+    private TextureRegion region(final Sprite sprite, final char direction) {
+        switch (direction) {
+            case 'l':
+                return sprite.left;
+            case 'r':
+                return sprite.right;
+            default:
+                return sprite.up;
+        }
+    }
+}
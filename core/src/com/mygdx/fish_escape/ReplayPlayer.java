@@ -0,0 +1,100 @@
+package com.mygdx.fish_escape;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class plays back a replay made by ReplayRecorder. It creates the world from the recorded
+ * seed and then ticks it, applying every recorded tap right before the tick it came before.
+ */
+public class ReplayPlayer {
+    private final DataInputStream in;
+    private final long seed;
+    private final FishWorld world;
+    private int nextFrame;
+    private int nextEvent;
+
+    public ReplayPlayer(final InputStream stream) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != ReplayRecorder.magic) {
+            throw new IOException("Not a replay");
+        }
+        final int version = in.readUnsignedByte();
+        if (version != ReplayRecorder.version) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        seed  = in.readLong();
+        world = new FishWorld(seed);
+        readEvent();
+    }
+
+    /*
+        This function applies the taps that are due and runs the next tick. It returns false once
+        the replay has ended, without running a tick.
+     */
+    public boolean step() throws IOException {
+        while (nextFrame == world.getFrames()) {
+            switch (nextEvent) {
+                case ReplayRecorder.EVENT_END:
+                    return false;
+                case ReplayRecorder.EVENT_LEFT:
+                    world.moveLeft();
+                    break;
+                case ReplayRecorder.EVENT_RIGHT:
+                    world.moveRight();
+                    break;
+                case ReplayRecorder.EVENT_RESTART:
+                    world.restart();
+                    break;
+            }
+            readEvent();
+        }
+        world.tick(FishWorld.INPUT_NONE);
+        return true;
+    }
+
+    /*
+        This function plays the rest of the replay and closes it.
+     */
+    public FishWorld playToEnd() throws IOException {
+        while (step()) {
+            // Keep ticking until the recording stops
+        }
+        in.close();
+        return world;
+    }
+
+    public long getSeed() { return seed; }
+
+    public FishWorld getWorld() { return world; }
+
+    /*
+        This function reads the next record. A replay that was cut off, for example because the
+        game was killed, ends at its last complete record.
+     */
+    private void readEvent() throws IOException {
+        try {
+            final long number = readNumber();
+            nextFrame += (int) (number >>> ReplayRecorder.eventBits);
+            nextEvent = (int) (number & ((1 << ReplayRecorder.eventBits) - 1));
+        } catch (EOFException e) {
+            nextFrame = world.getFrames();
+            nextEvent = ReplayRecorder.EVENT_END;
+        }
+    }
+
+    private long readNumber() throws IOException {
+        long number = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            number |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return number;
+    }
+}
@@ -0,0 +1,86 @@
+package com.mygdx.fish_escape;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class records a game so it can be played back exactly. A game only depends on its seed and
+ * on when the player tapped, so a replay is the seed followed by one small record per tap. Each
+ * record packs the number of ticks since the last record and what happened into a variable length
+ * number, so most taps take one or two bytes. The records go through a buffer and are only written
+ * out when it fills up, or when the game is paused or closed.
+ */
+public class ReplayRecorder {
+    // The start of every replay file, followed by the version of the format
+    static final int magic = 0x46455250;
+    static final int version = 2;
+    // What each record is
+    public static final int EVENT_END     = 0;
+    public static final int EVENT_LEFT    = 1;
+    public static final int EVENT_RIGHT   = 2;
+    public static final int EVENT_RESTART = 3;
+    static final int eventBits = 2;
+    private final DataOutputStream out;
+    private int lastFrame = 0;
+
+    /*
+        This constructor starts a replay of a game created with the seed.
+     */
+    public ReplayRecorder(final OutputStream stream, final long seed) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(magic);
+        out.writeByte(version);
+        out.writeLong(seed);
+    }
+
+    /*
+        This constructor goes on with a replay that was written up to a record at the frame, like
+        after a saved game was loaded. The stream appends to the replay.
+     */
+    public ReplayRecorder(final OutputStream stream, final int lastFrame) {
+        out = new DataOutputStream(new BufferedOutputStream(stream));
+        this.lastFrame = lastFrame;
+    }
+
+    /*
+        This function records something the player did after the world's frame-th tick.
+     */
+    public void record(final int frame, final int event) throws IOException {
+        writeNumber(((long) (frame - lastFrame) << eventBits) | event);
+        lastFrame = frame;
+    }
+
+    /*
+        This function returns the frame of the last record.
+     */
+    public int getLastFrame() { return lastFrame; }
+
+    /*
+        This function writes the buffered records out.
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /*
+        This function records where the game stopped and closes the replay.
+     */
+    public void close(final int frame) throws IOException {
+        record(frame, EVENT_END);
+        out.close();
+    }
+
+    /*
+        This function writes a number 7 bits at a time, with the top bit of every byte saying if
+        more bytes follow.
+     */
+    private void writeNumber(long number) throws IOException {
+        while (number >= 0x80) {
+            out.writeByte((int) (number & 0x7F) | 0x80);
+            number >>>= 7;
+        }
+        out.writeByte((int) number);
+    }
+}
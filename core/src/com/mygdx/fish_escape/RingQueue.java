@@ -0,0 +1,80 @@
+package com.mygdx.fish_escape;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is a fixed size, lock-free queue between exactly two threads: one that only offers
+ * and one that only peeks and polls. Unlike ConcurrentLinkedQueue it never allocates, so things
+ * can be passed back and forth between the threads forever without making garbage.
+ */
+class RingQueue<T> {
+    private final Object items[];
+    private final int mask;
+    // The next slot to take from and the next slot to put into, only ever growing
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /*
+        This constructor makes a queue that holds at least capacity things, rounded up to a power of
+        two.
+     */
+    RingQueue(final int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        items = new Object[size];
+        mask  = size - 1;
+    }
+
+    /*
+        This function adds a thing to the queue, unless it's full. It returns whether it was added.
+     */
+    boolean offer(final T item) {
+        final long tail = this.tail.get();
+        if (tail - head.get() == items.length) {
+            return false;
+        }
+        items[(int) (tail & mask)] = item;
+        // The item is written before the other thread can see the new tail
+        this.tail.lazySet(tail + 1);
+        return true;
+    }
+
+    /*
+        This function returns the oldest thing in the queue without taking it, or null.
+     */
+    @SuppressWarnings("unchecked")
+    T peek() {
+        final long head = this.head.get();
+        if (head == tail.get()) {
+            return null;
+        }
+        return (T) items[(int) (head & mask)];
+    }
+
+    /*
+        This function takes the oldest thing out of the queue, or returns null if it's empty.
+     */
+    @SuppressWarnings("unchecked")
+    T poll() {
+        final long head = this.head.get();
+        if (head == tail.get()) {
+            return null;
+        }
+        final int slot = (int) (head & mask);
+        final T item = (T) items[slot];
+        items[slot] = null;
+        this.head.lazySet(head + 1);
+        return item;
+    }
+
+    /*
+        This function empties the queue. Neither thread can be using it at the time.
+     */
+    void clear() {
+        while (poll() != null) {
+            // Keep going
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package com.mygdx.fish_escape;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * This class works out the best route through the obstacles and the crackers: the one with the
+ * fewest taps, and the most crackers of those. It gives the par of the round, which is the best
+ * route from where the fish started, and a hint, which is the column the fish should swim to
+ * before it next moves up. The sharks move wherever the fish goes, so they're left out.
+ *
+ * A route only goes up, a row of the map at a time, and in each row the fish swims left or right
+ * to the column it moves up from. What a row costs from every column to every column of the row
+ * above is an 8 by 8 matrix, and what a run of rows costs is the product of theirs, with min in
+ * place of plus and plus in place of times. The rows above the fish are kept in a queue made of two
+ * stacks, which share a ring of matrices. The rows pushed on the back are multiplied into one
+ * matrix as they come, and every row on the front holds the product of itself and the front rows
+ * after it. A row that comes onto the map costs one product, and the fish moving up pops a row,
+ * which costs one product per row on average, so the rows are never solved again. The hint
+ * multiplies the fish's own row by the front and the back.
+ *
+ * A tap costs more than all of the crackers of a round together, so a cost is tapCost times the
+ * taps minus the crackers, and the lowest cost is the best route.
+ */
+class RouteSolver {
+    private final FishWorld world;
+    private final int width = ChunkGenerator.WIDTH;
+    private final int cells = width * width;
+    private static final int tapCost = 64;
+    private static final int unreachable = 1 << 28;
+    // The rows above the fish, from the one right above it to the last one that's solved, starting
+    // at queueStart in the ring. The front stack comes first and holds a product per row, and the
+    // back holds its rows as they are and their product.
+    private final int capacity;
+    private final int queue[][];
+    private final int backProduct[];
+    private int queueStart = 0;
+    private int frontSize  = 0;
+    private int backSize   = 0;
+    // The lowest row in the queue, and the next row to solve
+    private int firstRow;
+    private int nextRow;
+    // The row the round ends in, and the best cost of reaching every column of nextRow from where
+    // the round started
+    private int finishRow;
+    private final int par[];
+    // Space to work in, so solving allocates nothing
+    private final int matrix[];
+    private final int product[];
+    private final int vector[];
+    private final int rowCosts[];
+    private final int inputs[];
+    // The row being solved and the row above it
+    private long covered;
+    private long coveredAbove;
+    private long crackers;
+    private long crackersAbove;
+    // The hint is only worked out again when the tick or the fish changed
+    private int hintFrame = -1;
+    private int hintFishX;
+    private int hintFishY;
+    private int hintX;
+    private int hintInput;
+    private int hintCost;
+
+    /*
+        This constructor makes room for a queue of as many rows as there can be between the fish
+        and the top of the map.
+     */
+    RouteSolver(final FishWorld world, final int capacity) {
+        this.world    = world;
+        this.capacity = capacity;
+        queue       = new int[capacity][cells];
+        backProduct = new int[cells];
+        par         = new int[width];
+        matrix      = new int[cells];
+        product     = new int[cells];
+        vector      = new int[width];
+        rowCosts    = new int[width];
+        inputs      = new int[width];
+    }
+
+    /*
+        This function starts a new route from where the fish starts the round.
+     */
+    void reset(final int startX, final int startY, final int finishRow) {
+        this.finishRow = finishRow;
+        for (int x = 0; x < width; x++) {
+            par[x] = x == startX ? 0 : unreachable;
+        }
+        nextRow   = startY;
+        frontSize = 0;
+        backSize  = 0;
+        firstRow  = startY + 1;
+        hintFrame = -1;
+        update();
+    }
+
+    /*
+        This function solves the rows that came onto the map since it was last called, and drops
+        the rows the fish has moved past. It's called every time the map scrolls, which is when
+        both happen.
+     */
+    void update() {
+        final int fishY = world.getFishMapY();
+        final int lastRow = Math.min(world.getMapEnd() - 1, finishRow);
+        final int taps = Math.min(world.getMoveTime(), width - 1);
+        while (nextRow < lastRow) {
+            solveRow(nextRow, taps, matrix);
+            multiply(par, matrix, vector);
+            System.arraycopy(vector, 0, par, 0, width);
+            if (nextRow > fishY) {
+                push(matrix);
+            }
+            nextRow++;
+        }
+        while (firstRow <= fishY && frontSize + backSize > 0) {
+            pop();
+        }
+        if (frontSize + backSize == 0) {
+            firstRow = nextRow;
+        }
+    }
+
+    /*
+        This function fills the matrix with the costs of going from every column of a row of the map
+        to every column of the row above it. A fish can't start in a covered cell.
+     */
+    private void solveRow(final int mapY, final int taps, final int costs[]) {
+        loadRow(mapY);
+        for (int from = 0; from < width; from++) {
+            if ((covered & 1L << from) != 0) {
+                for (int x = 0; x < width; x++) {
+                    costs[from * width + x] = unreachable;
+                }
+            } else {
+                solveFrom(from, taps, costs, from * width, null);
+            }
+        }
+    }
+
+    /*
+        This function looks up the obstacles and the crackers of a row of the map and the row above
+        it, for solveFrom.
+     */
+    private void loadRow(final int mapY) {
+        covered       = world.mapRow(mapY);
+        coveredAbove  = world.mapRow(mapY + 1);
+        crackers      = world.crackerRow(mapY);
+        crackersAbove = world.crackerRow(mapY + 1);
+    }
+
+    /*
+        This function works out the costs of going from a column of the loaded row to every column
+        of the row above it. The fish swims at most taps cells the short way or the long way
+        around, takes the crackers in the cells it swims into and then moves up, which it can't do
+        into a covered cell. If inputs isn't null, it gets the first tap towards every column.
+     */
+    private void solveFrom(final int from, final int taps, final int costs[], final int offset,
+                           final int inputs[]) {
+        for (int x = 0; x < width; x++) {
+            costs[offset + x] = unreachable;
+        }
+        for (int step = -1; step <= 1; step += 2) {
+            int x = from;
+            int taken = 0;
+            for (int tap = 0; tap <= taps; tap++) {
+                if (tap > 0) {
+                    x = (x + step + width) % width;
+                    if ((covered & 1L << x) != 0) {
+                        break;
+                    }
+                    taken += (int) (crackers >>> x & 1);
+                }
+                if ((coveredAbove & 1L << x) != 0) {
+                    continue;
+                }
+                final int cost = tap * tapCost - taken - (int) (crackersAbove >>> x & 1);
+                if (cost < costs[offset + x]) {
+                    costs[offset + x] = cost;
+                    if (inputs != null) {
+                        inputs[x] = tap == 0 ? FishWorld.INPUT_NONE
+                                : step < 0 ? FishWorld.INPUT_LEFT : FishWorld.INPUT_RIGHT;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+        This function puts a row on the back of the queue and multiplies it into the back's
+        product.
+     */
+    private void push(final int row[]) {
+        if (frontSize + backSize == capacity) {
+            throw new IllegalStateException("The route is longer than " + capacity + " rows");
+        }
+        System.arraycopy(row, 0, queue[(queueStart + frontSize + backSize) % capacity], 0, cells);
+        if (backSize == 0) {
+            System.arraycopy(row, 0, backProduct, 0, cells);
+        } else {
+            multiply(backProduct, row, product);
+            System.arraycopy(product, 0, backProduct, 0, cells);
+        }
+        backSize++;
+    }
+
+    /*
+        This function drops the lowest row of the queue. When the front is empty, the back becomes
+        the front, from its highest row to its lowest, with each row multiplied by the product of
+        the rows above it, so every row is multiplied once.
+     */
+    private void pop() {
+        if (frontSize == 0) {
+            for (int i = backSize - 2; i >= 0; i--) {
+                final int slot = (queueStart + i) % capacity;
+                multiply(queue[slot], queue[(slot + 1) % capacity], product);
+                System.arraycopy(product, 0, queue[slot], 0, cells);
+            }
+            frontSize = backSize;
+            backSize  = 0;
+        }
+        queueStart = (queueStart + 1) % capacity;
+        frontSize--;
+        firstRow++;
+    }
+
+    /*
+        This function multiplies two matrices, or a vector and a matrix, by taking the lowest sum
+        instead of adding up the products. Columns that can't be reached are skipped, and a lot of
+        them can't be, since most rows have obstacles.
+     */
+    private void multiply(final int a[], final int b[], final int out[]) {
+        final int rows = a.length / width;
+        for (int i = 0; i < rows * width; i++) {
+            out[i] = unreachable;
+        }
+        for (int i = 0; i < rows; i++) {
+            for (int k = 0; k < width; k++) {
+                final int cost = a[i * width + k];
+                if (cost >= unreachable) {
+                    continue;
+                }
+                for (int j = 0; j < width; j++) {
+                    final int sum = cost + b[k * width + j];
+                    if (sum < out[i * width + j]) {
+                        out[i * width + j] = sum;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+        This function fills costs with the cheapest way from every column of the row above the fish
+        to the last row that's solved, which is the lowest cost in each row of the queue's product.
+     */
+    private void routeCosts(final int costs[]) {
+        if (backSize > 0) {
+            rowMinimums(backProduct, costs);
+        } else {
+            for (int x = 0; x < width; x++) {
+                costs[x] = 0;
+            }
+        }
+        if (frontSize > 0) {
+            final int frontProduct[] = queue[queueStart];
+            for (int x = 0; x < width; x++) {
+                int best = unreachable;
+                for (int k = 0; k < width; k++) {
+                    final int cost = frontProduct[x * width + k] + costs[k];
+                    if (cost < best) {
+                        best = cost;
+                    }
+                }
+                vector[x] = best;
+            }
+            System.arraycopy(vector, 0, costs, 0, width);
+        }
+    }
+
+    private void rowMinimums(final int a[], final int costs[]) {
+        for (int x = 0; x < width; x++) {
+            int best = unreachable;
+            for (int k = 0; k < width; k++) {
+                best = Math.min(best, a[x * width + k]);
+            }
+            costs[x] = best;
+        }
+    }
+
+    /*
+        This function works out the hint, unless the tick and the fish are the same as the last
+        time. The fish can tap once every tick until it next moves up, including that tick.
+     */
+    private void solveHint() {
+        final int fishX = world.getFishX();
+        final int fishY = world.getFishMapY();
+        if (hintFrame == world.getFrames() && hintFishX == fishX && hintFishY == fishY) {
+            return;
+        }
+        hintFrame = world.getFrames();
+        hintFishX = fishX;
+        hintFishY = fishY;
+        hintX     = -1;
+        hintInput = FishWorld.INPUT_NONE;
+        hintCost  = unreachable;
+        if (!world.canMove() || fishY >= finishRow) {
+            return;
+        }
+        final int moveTime = world.getMoveTime();
+        final int taps = Math.min((moveTime - world.getFrames() % moveTime) % moveTime + 1,
+                width - 1);
+        loadRow(fishY);
+        solveFrom(fishX, taps, rowCosts, 0, inputs);
+        routeCosts(product);
+        for (int x = 0; x < width; x++) {
+            if (rowCosts[x] >= unreachable || product[x] >= unreachable) {
+                continue;
+            }
+            final int cost = rowCosts[x] + product[x];
+            if (cost < hintCost) {
+                hintCost  = cost;
+                hintX     = x;
+                hintInput = inputs[x];
+            }
+        }
+    }
+
+    /*
+        This function writes the par, since the rows it was worked out from are gone once the fish
+        moved past them. The queue is solved again from the map when it's read.
+     */
+    void writeState(final DataOutput out) throws IOException {
+        out.writeShort(finishRow);
+        out.writeShort(nextRow);
+        for (int x = 0; x < width; x++) {
+            out.writeInt(par[x]);
+        }
+    }
+
+    void readState(final DataInput in) throws IOException {
+        finishRow = in.readShort();
+        final int solvedRow = in.readShort();
+        for (int x = 0; x < width; x++) {
+            par[x] = in.readInt();
+        }
+        // Solve the rows above the fish again, without adding them to the par twice
+        final int fishY = world.getFishMapY();
+        final int taps = Math.min(world.getMoveTime(), width - 1);
+        frontSize = 0;
+        backSize  = 0;
+        firstRow  = fishY + 1;
+        hintFrame = -1;
+        for (int y = fishY + 1; y < solvedRow; y++) {
+            solveRow(y, taps, matrix);
+            push(matrix);
+        }
+        nextRow = solvedRow;
+        update();
+    }
+
+    /*
+        This function returns the fewest taps from where the fish started the round to the finish,
+        or to the last row that's solved if the finish isn't on the map yet, or -1 if there's no
+        way through.
+     */
+    int getParTaps() {
+        final int cost = best(par);
+        return cost >= unreachable ? -1 : taps(cost);
+    }
+
+    int getParCrackers() {
+        final int cost = best(par);
+        return cost >= unreachable ? 0 : taps(cost) * tapCost - cost;
+    }
+
+    /*
+        This function returns whether the par is for the whole round, which it is once the finish
+        is on the map.
+     */
+    boolean isParFinal() { return nextRow >= finishRow; }
+
+    /*
+        This function returns the column the fish should be in when it next moves up, or -1 if it
+        can't get through from where it is.
+     */
+    int getHintX() {
+        solveHint();
+        return hintX;
+    }
+
+    /*
+        This function returns which way the fish should tap next, or INPUT_NONE if it's where it
+        should be.
+     */
+    int getHintInput() {
+        solveHint();
+        return hintInput;
+    }
+
+    /*
+        This function returns the fewest taps from where the fish is to the finish or the last
+        row that's solved, or -1 if it can't get through.
+     */
+    int getHintTaps() {
+        solveHint();
+        return hintX < 0 ? -1 : taps(hintCost);
+    }
+
+    private int best(final int costs[]) {
+        int best = unreachable;
+        for (int x = 0; x < width; x++) {
+            best = Math.min(best, costs[x]);
+        }
+        return best;
+    }
+
+    /*
+        A cost is tapCost times the taps minus fewer than tapCost crackers, so rounding it up to
+        the next tapCost gives back the taps.
+     */
+    private static int taps(final int cost) {
+        return (cost + tapCost - 1) / tapCost;
+    }
+}
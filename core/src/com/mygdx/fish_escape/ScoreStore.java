@@ -0,0 +1,400 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.gdx.Gdx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps the high score and the statistics of every round between launches. Every round
+ * that ends is appended to a log as a few variable length numbers, and a small snapshot holds the
+ * totals of everything in the log. Starting up reads the snapshot and the end of the log it
+ * doesn't count yet, like after the game was killed, which is never longer than a log gets. It's
+ * done before the store is used, so the high score it returns is always the whole one. Once the
+ * log gets long, the snapshot moves on to a new log and the old one is deleted, since the snapshot
+ * already counts it. The snapshot holds the generation of its log, so a log is never counted twice
+ * or lost if the game dies between writing the snapshot and deleting the old log.
+ *
+ * All of the writing is done by a background thread, so recording a round never waits for the
+ * disk. The rounds are written in batches, when a batch has waited long enough, or right away when
+ * the game is paused or closed. The rounds are handed back after they're written and used again,
+ * so recording one doesn't allocate anything.
+ */
+public class ScoreStore implements Runnable {
+    // The start of every snapshot file, followed by the version of the format
+    static final int magic = 0x46455353;
+    static final int version = 2;
+    // How long a round waits for others to be written with it, and how long closing waits for
+    // the writer, in milliseconds
+    private final long batchDelay = 2000;
+    private final long closeTimeout = 1000;
+    // How long the log gets before the snapshot moves on to a new one
+    private final long maxLogLength = 64 * 1024;
+    private final File directory;
+    private final File snapshotFile;
+    // The snapshot is written here first and then renamed over the old one
+    private final File newSnapshotFile;
+    private final int maxQueuedRounds = 64;
+    private final BlockingQueue<Round> queue = new ArrayBlockingQueue<Round>(maxQueuedRounds);
+    private final BlockingQueue<Round> freeRounds = new ArrayBlockingQueue<Round>(maxQueuedRounds);
+    private final Thread writer;
+    // These markers tell the writer to write now, and to write and stop
+    private final Round flushMarker = new Round();
+    private final Round closeMarker = new Round();
+    // The totals, only changed by the writer after they're loaded. The log of the generation
+    // the snapshot is on is counted up to logLength.
+    private int logGeneration = 0;
+    private long logLength = 0;
+    // The high score can be read while the writer changes it
+    private volatile int highScore = 0;
+    private int bestLevel = 0;
+    private long rounds = 0;
+    private long runs = 0;
+    private long crackers = 0;
+    private long moves = 0;
+
+    /*
+        This class is one round that ended.
+     */
+    private static class Round {
+        private int level;
+        private int points;
+        private int moves;
+        private boolean eaten;
+    }
+
+    /*
+        This constructor loads the totals from the snapshot in the directory, counts the rounds in
+        the log the snapshot missed and starts the writer. A missing or broken snapshot starts
+        everything at zero.
+     */
+    public ScoreStore(final File directory) {
+        directory.mkdirs();
+        this.directory = directory;
+        snapshotFile   = new File(directory, "scores.snapshot");
+        newSnapshotFile = new File(directory, "scores.snapshot.new");
+        try {
+            readSnapshot();
+        } catch (IOException e) {
+            logGeneration = highScore = bestLevel = 0;
+            logLength = rounds = runs = crackers = moves = 0;
+        }
+        try {
+            readLog();
+        } catch (IOException e) {
+            Gdx.app.error("ScoreStore", "Couldn't read the score log", e);
+        }
+        writer = new Thread(this, "ScoreStore");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /*
+        This function returns the best number of crackers picked up before being eaten.
+     */
+    public int getHighScore() { return highScore; }
+
+    /*
+        This function queues a round that ended to be written. It never waits for the disk. If the
+        writer is so far behind that the queue is full, the round isn't saved.
+     */
+    public void record(final int level, final int points, final int moves, final boolean eaten) {
+        Round round = freeRounds.poll();
+        if (round == null) {
+            round = new Round();
+        }
+        round.level  = level;
+        round.points = points;
+        round.moves  = moves;
+        round.eaten  = eaten;
+        queue.offer(round);
+    }
+
+    /*
+        This function has the rounds that are waiting written now, without waiting for them.
+     */
+    public void flush() {
+        queue.offer(flushMarker);
+    }
+
+    /*
+        This function writes the rounds that are waiting and stops the writer. It waits a little
+        while for the writing to finish, and gives up if the queue stays full, so closing the game
+        never hangs on the disk.
+     */
+    public void close() {
+        try {
+            if (writer.isAlive()
+                    && queue.offer(closeMarker, closeTimeout, TimeUnit.MILLISECONDS)) {
+                writer.join(closeTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+        This function runs on the writer thread and writes the rounds in batches. A batch that
+        can't be written stays in the totals, and is saved with the next snapshot that can be, so
+        the writer keeps going.
+     */
+    @Override
+    public void run() {
+        final List<Round> batch = new ArrayList<Round>();
+        try {
+            while (true) {
+                Round round = queue.take();
+                final long deadline = System.currentTimeMillis() + batchDelay;
+                while (round != null && round != flushMarker && round != closeMarker) {
+                    batch.add(round);
+                    round = queue.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                }
+                if (!batch.isEmpty()) {
+                    try {
+                        writeBatch(batch);
+                    } catch (IOException e) {
+                        Gdx.app.error("ScoreStore", "Couldn't save the scores", e);
+                    }
+                    for (Round written : batch) {
+                        freeRounds.offer(written);
+                    }
+                    batch.clear();
+                }
+                if (round == closeMarker) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+        This function appends the batch to the log and adds it to the snapshot. If the log has
+        gotten too long, the snapshot moves on to the next generation's log, which doesn't exist
+        yet, and the old log is deleted once the snapshot is written.
+     */
+    private void writeBatch(final List<Round> batch) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Round round : batch) {
+            writeNumber(bytes, round.level);
+            writeNumber(bytes, round.points);
+            writeNumber(bytes, round.moves);
+            writeNumber(bytes, round.eaten ? 1 : 0);
+            add(round);
+        }
+        final File logFile = logFile(logGeneration);
+        if (logFile.length() > logLength) {
+            // A batch that failed partway through may have left some of its rounds in the log.
+            // They're already in the totals, so they're dropped.
+            final RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+            try {
+                file.setLength(logLength);
+            } finally {
+                file.close();
+            }
+        }
+        final FileOutputStream log = new FileOutputStream(logFile, true);
+        try {
+            bytes.writeTo(log);
+        } finally {
+            log.close();
+        }
+        logLength += bytes.size();
+        if (logLength > maxLogLength) {
+            // If the game dies before the snapshot is written, the old snapshot still counts the
+            // old log up to where the batch starts. If it dies after, the new snapshot counts the
+            // batch and the old log is deleted when the game starts again.
+            logGeneration++;
+            logLength = 0;
+            writeSnapshot();
+            logFile.delete();
+        } else {
+            writeSnapshot();
+        }
+    }
+
+    /*
+        This function returns the log of a generation. The first one is called scores.log, like
+        the only log was before the logs had generations.
+     */
+    private File logFile(final int generation) {
+        return new File(directory,
+                generation == 0 ? "scores.log" : "scores." + generation + ".log");
+    }
+
+    /*
+        This function adds a round to the totals.
+     */
+    private void add(final Round round) {
+        rounds++;
+        moves += round.moves;
+        bestLevel = Math.max(bestLevel, round.level);
+        if (round.eaten) {
+            runs++;
+            crackers += round.points;
+            highScore = Math.max(highScore, round.points);
+        }
+    }
+
+    /*
+        This function reads the totals from the snapshot, which is always the same small size. If
+        the game died after deleting the old snapshot but before renaming the new one into its
+        place, the new one is whole and is read instead.
+     */
+    private void readSnapshot() throws IOException {
+        File file = snapshotFile;
+        if (!file.exists()) {
+            file = newSnapshotFile;
+            if (!file.exists()) {
+                return;
+            }
+        }
+        final DataInputStream in =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != magic) {
+                throw new IOException("Not a score snapshot");
+            }
+            // The first version had one log, which is the first generation's
+            final int snapshotVersion = in.readUnsignedByte();
+            if (snapshotVersion < 1 || snapshotVersion > version) {
+                throw new IOException("Unknown score snapshot version " + snapshotVersion);
+            }
+            logGeneration = snapshotVersion >= 2 ? in.readInt() : 0;
+            logLength = in.readLong();
+            highScore = in.readInt();
+            bestLevel = in.readInt();
+            rounds    = in.readLong();
+            runs      = in.readLong();
+            crackers  = in.readLong();
+            moves     = in.readLong();
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+        This function writes the totals to a new file and then puts it in place of the snapshot, so
+        there is always a whole snapshot on the disk.
+     */
+    private void writeSnapshot() throws IOException {
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(newSnapshotFile)));
+        try {
+            out.writeInt(magic);
+            out.writeByte(version);
+            out.writeInt(logGeneration);
+            out.writeLong(logLength);
+            out.writeInt(highScore);
+            out.writeInt(bestLevel);
+            out.writeLong(rounds);
+            out.writeLong(runs);
+            out.writeLong(crackers);
+            out.writeLong(moves);
+        } finally {
+            out.close();
+        }
+        if (!newSnapshotFile.renameTo(snapshotFile)) {
+            // Some file systems can't rename over a file that exists. Until the new snapshot is
+            // renamed, reading the scores falls back to it.
+            snapshotFile.delete();
+            if (!newSnapshotFile.renameTo(snapshotFile)) {
+                throw new IOException("Couldn't replace " + snapshotFile);
+            }
+        }
+    }
+
+    /*
+        This function counts the rounds in the log that were written after the snapshot. A round
+        that was only partly written is dropped. The logs of the generations before are already
+        counted, and are left over if the game died before deleting them.
+     */
+    private void readLog() throws IOException {
+        for (int generation = logGeneration - 1; generation >= 0; generation--) {
+            if (!logFile(generation).delete()) {
+                break;
+            }
+        }
+        final File logFile = logFile(logGeneration);
+        if (!logFile.exists()) {
+            logLength = 0;
+            return;
+        }
+        final long length = logFile.length();
+        if (length <= logLength) {
+            // A log that lost its end on the disk only holds rounds that are already counted
+            logLength = length;
+            return;
+        }
+        final RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+        try {
+            file.seek(logLength);
+            final InputStream in = new BufferedInputStream(new FileInputStream(file.getFD()));
+            while (true) {
+                final Round round = new Round();
+                final int bytes[] = new int[1];
+                try {
+                    round.level  = (int) readNumber(in, bytes);
+                    round.points = (int) readNumber(in, bytes);
+                    round.moves  = (int) readNumber(in, bytes);
+                    round.eaten  = readNumber(in, bytes) != 0;
+                } catch (EOFException e) {
+                    break;
+                }
+                add(round);
+                logLength += bytes[0];
+            }
+            file.setLength(logLength);
+        } finally {
+            file.close();
+        }
+        writeSnapshot();
+    }
+
+    /*
+        This function writes a number 7 bits at a time, with the top bit of every byte saying if
+        more bytes follow.
+     */
+    private static void writeNumber(final ByteArrayOutputStream out, long number) {
+        while (number >= 0x80) {
+            out.write((int) (number & 0x7F) | 0x80);
+            number >>>= 7;
+        }
+        out.write((int) number);
+    }
+
+    /*
+        This function reads a number written by writeNumber, adding how many bytes it took to the
+        count.
+     */
+    private static long readNumber(final InputStream in, final int count[]) throws IOException {
+        long number = 0;
+        for (int shift = 0; ; shift += 7) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            count[0]++;
+            number |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return number;
+            }
+        }
+    }
+}
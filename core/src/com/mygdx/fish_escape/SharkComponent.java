@@ -0,0 +1,13 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.ashley.core.Component;
+
+/**
+ * This component marks a shark that chases the fish. It goes back to its starting column whenever
+ * it falls too far behind.
+ */
+public class SharkComponent implements Component {
+    int startX;
+    // Whether the shark got to its cell by jumping, which is how a fish eaten by it died
+    boolean jumped;
+}
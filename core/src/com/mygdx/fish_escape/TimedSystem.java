@@ -0,0 +1,31 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.ashley.core.EntitySystem;
+
+/**
+ * This class is a system of the world that records how long every update takes under its own
+ * probe, so the time of a tick can be split up by system.
+ */
+abstract class TimedSystem extends EntitySystem {
+    private final int probe;
+    private PerfStats perf = PerfStats.DISABLED;
+
+    TimedSystem(final int priority, final int probe) {
+        super(priority);
+        this.probe = probe;
+    }
+
+    void setPerfStats(final PerfStats perf) { this.perf = perf; }
+
+    @Override
+    public final void update(final float deltaTime) {
+        final long start = perf.start();
+        process();
+        perf.stop(probe, start);
+    }
+
+    /*
+        This function does the system's part of the tick.
+     */
+    abstract void process();
+}
@@ -0,0 +1,167 @@
+package com.mygdx.fish_escape;
+
+/**
+ * This class steps many games of the fish game side by side, for training and evaluating bots
+ * without a screen. Every step each game takes an action, the fish swims sideways if it was asked
+ * to and then up, and the sharks move after it, the same as when the fish moves up during the game.
+ * How many ticks there are between moves doesn't matter to a bot, so they are skipped.
+ *
+ * What every game looks like after the step is written into arrays of primitives that are made once
+ * and reused, along with the reward of the step and whether the round ended. A round that ended is
+ * started again right away, so the arrays show the start of the next round. Nothing is allocated
+ * per step, so one thread can run a few hundred thousand steps a second; for more, run one of these
+ * on every core.
+ */
+public class VectorEnv {
+    // The actions a bot can take
+    public static final int ACTION_NONE  = FishWorld.INPUT_NONE;
+    public static final int ACTION_LEFT  = FishWorld.INPUT_LEFT;
+    public static final int ACTION_RIGHT = FishWorld.INPUT_RIGHT;
+    // What a step is worth
+    public static final float REWARD_CRACKER = 1;
+    public static final float REWARD_FINISH  = 10;
+    public static final float REWARD_EATEN   = -10;
+    private final FishWorld worlds[];
+    // The observations cover the screen and the two rows below it, where the sharks come from
+    private final int lowestRow = -2;
+    private final int width;
+    private final int rows;
+    private final int numberOfSharks;
+    private final int numberOfCrackers;
+    // One byte per row of every game, with a bit set for each cell covered by an obstacle
+    private final byte obstacleRows[];
+    // The cell of every shark and cracker of every game, counted from the bottom left cell of the
+    // observation as y * width + x, or -1 if it's off the observation or was taken
+    private final int sharkCells[];
+    private final int crackerCells[];
+    private final int fishCells[];
+    private final int movesLeft[];
+    private final float rewards[];
+    private final boolean dones[];
+
+    /*
+        This constructor creates the games, each with its own seed following the one given.
+     */
+    public VectorEnv(final int numberOfGames, final long seed) {
+        worlds = new FishWorld[numberOfGames];
+        for (int i = 0; i < numberOfGames; i++) {
+            worlds[i] = new FishWorld(seed + i);
+        }
+        width            = worlds[0].getNumberOfHorizontalCells();
+        rows             = worlds[0].getNumberOfVerticalCells() - lowestRow;
+        numberOfSharks   = worlds[0].getNumberOfEnemies();
+        numberOfCrackers = worlds[0].getNumberOfCrackers();
+        obstacleRows = new byte[numberOfGames * rows];
+        sharkCells   = new int[numberOfGames * numberOfSharks];
+        crackerCells = new int[numberOfGames * numberOfCrackers];
+        fishCells    = new int[numberOfGames];
+        movesLeft    = new int[numberOfGames];
+        rewards      = new float[numberOfGames];
+        dones        = new boolean[numberOfGames];
+        for (int i = 0; i < numberOfGames; i++) {
+            observe(i);
+        }
+    }
+
+    /*
+        This function starts every game over from the first level, like at the start of an epoch.
+     */
+    public void reset() {
+        for (int i = 0; i < worlds.length; i++) {
+            worlds[i].startOver();
+            rewards[i] = 0;
+            dones[i]   = false;
+            observe(i);
+        }
+    }
+
+    /*
+        This function steps every game with its action. Afterwards the arrays hold the reward of
+        the step, whether the round ended, and what the game looks like now.
+     */
+    public void step(final int actions[]) {
+        for (int i = 0; i < worlds.length; i++) {
+            final FishWorld world = worlds[i];
+            final int points = world.getPoints();
+            switch (actions[i]) {
+                case ACTION_LEFT:
+                    world.moveLeft();
+                    break;
+                case ACTION_RIGHT:
+                    world.moveRight();
+                    break;
+            }
+            world.moveUp();
+            float reward = (world.getPoints() - points) * REWARD_CRACKER;
+            dones[i] = world.isOver();
+            if (dones[i]) {
+                reward += world.isEaten() ? REWARD_EATEN : REWARD_FINISH;
+                world.restart();
+            }
+            rewards[i] = reward;
+            observe(i);
+        }
+    }
+
+    /*
+        This function writes what a game looks like into the observation arrays.
+     */
+    private void observe(final int game) {
+        final FishWorld world = worlds[game];
+        for (int row = 0; row < rows; row++) {
+            obstacleRows[game * rows + row] = (byte) world.obstacleRow(row + lowestRow);
+        }
+        for (int i = 0; i < numberOfSharks; i++) {
+            sharkCells[game * numberOfSharks + i] = cell(world.getEnemyX(i), world.getEnemyY(i));
+        }
+        for (int i = 0; i < numberOfCrackers; i++) {
+            crackerCells[game * numberOfCrackers + i] = world.isCrackerTaken(i) ?
+                    -1 : cell(world.getCrackerX(i), world.getCrackerY(i));
+        }
+        fishCells[game] = cell(world.getFishX(), world.getFishY());
+        movesLeft[game] = world.getMovesLeft();
+    }
+
+    /*
+        This function finds the cell of the observation a cell of the screen is in, or -1.
+     */
+    private int cell(final int x, final int y) {
+        if (x < 0 || x >= width || y < lowestRow || y >= lowestRow + rows) {
+            return -1;
+        }
+        return (y - lowestRow) * width + x;
+    }
+
+    public int getNumberOfGames() { return worlds.length; }
+
+    public int getWidth() { return width; }
+
+    /*
+        This function returns how many rows each game has in the observation. The bottom row is two
+        rows below the screen.
+     */
+    public int getRows() { return rows; }
+
+    public int getNumberOfSharks() { return numberOfSharks; }
+
+    public int getNumberOfCrackers() { return numberOfCrackers; }
+
+    public byte[] getObstacleRows() { return obstacleRows; }
+
+    public int[] getSharkCells() { return sharkCells; }
+
+    public int[] getCrackerCells() { return crackerCells; }
+
+    public int[] getFishCells() { return fishCells; }
+
+    public int[] getMovesLeft() { return movesLeft; }
+
+    public float[] getRewards() { return rewards; }
+
+    public boolean[] getDones() { return dones; }
+
+    /*
+        This function returns one of the games, to look at more closely.
+     */
+    public FishWorld getWorld(final int game) { return worlds[game]; }
+}
@@ -0,0 +1,32 @@
+package com.mygdx.fish_escape.desktop;
+
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.mygdx.fish_escape.FishEscape;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+
+public class DesktopLauncher {
+	public static void main (String[] arg) {
+		Lwjgl3ApplicationConfiguration config = new Lwjgl3ApplicationConfiguration();
+		config.setTitle("Fish Escape");
+		// A phone sized window, with square cells
+		config.setWindowedMode(480, 840);
+		// --perf shows the frame times on the screen and saves them in perf/, and --continuous
+		// draws every frame instead of only the ones where something changed. --race host[:port]
+		// races the other players on a race server, on its default port if none is given
+		final List<String> options = Arrays.asList(arg);
+		final boolean instrumented = options.contains("--perf");
+		final boolean continuous   = options.contains("--continuous");
+		InetSocketAddress raceServer = null;
+		final int race = options.indexOf("--race");
+		if (race >= 0 && race + 1 < arg.length) {
+			final String address[] = arg[race + 1].split(":");
+			raceServer = new InetSocketAddress(address[0],
+					address.length > 1 ? Integer.parseInt(address[1]) : 7777);
+		}
+		new Lwjgl3Application(new FishEscape(instrumented, !continuous, raceServer), config);
+	}
+}
@@ -0,0 +1,98 @@
+package com.mygdx.fish_escape.headless;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.mygdx.fish_escape.FishEscape;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * This program runs the whole game for a number of frames on the headless backend, with a GL that
+ * draws nothing, and prints how long loading and the frames after it took, along with the game's
+ * own frame and tick histograms. It needs no GPU or display, so it runs on any Linux server.
+ *
+ * Usage: HeadlessLauncher [frames] [frames per second, 0 for as fast as possible]
+ * It has to be run from android/assets, where the game finds its assets.
+ */
+public class HeadlessLauncher extends ApplicationAdapter {
+    private static final CountDownLatch finished = new CountDownLatch(1);
+    private final FishEscape game = new FishEscape(true);
+    private final long frameTimes[];
+    private int frame = 0;
+    private long startTime;
+    private long loadTime;
+
+    private HeadlessLauncher(final int frames) {
+        frameTimes = new long[frames];
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int frames = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final int framesPerSecond = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        final HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.renderInterval = framesPerSecond > 0 ? 1f / framesPerSecond : 0;
+        new HeadlessApplication(new HeadlessLauncher(frames), config);
+        finished.await();
+    }
+
+    @Override
+    public void create() {
+        Gdx.gl = Gdx.gl20 = new MockGL();
+        startTime = System.nanoTime();
+        game.create();
+    }
+
+    /*
+        This function draws one frame of the game, and times it once the assets have loaded. After
+        the last frame it prints the times and stops.
+     */
+    @Override
+    public void render() {
+        if (frame == frameTimes.length) {
+            return;
+        }
+        if (!game.isLoaded()) {
+            game.render();
+            loadTime = System.nanoTime() - startTime;
+            return;
+        }
+        final long frameStart = System.nanoTime();
+        game.render();
+        frameTimes[frame++] = System.nanoTime() - frameStart;
+        if (frame == frameTimes.length) {
+            printTimes(System.nanoTime() - startTime - loadTime);
+            Gdx.app.exit();
+        }
+    }
+
+    @Override
+    public void pause() {
+        game.pause();
+    }
+
+    @Override
+    public void dispose() {
+        game.dispose();
+        finished.countDown();
+    }
+
+    private void printTimes(final long totalTime) {
+        final long sorted[] = frameTimes.clone();
+        Arrays.sort(sorted);
+        long sum = 0;
+        for (long time : sorted) {
+            sum += time;
+        }
+        System.out.printf("loaded in %.1f ms, then %d frames in %.1f ms%n",
+                loadTime / 1e6, sorted.length, totalTime / 1e6);
+        System.out.printf("frame time: mean %.1f us, p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                sum / 1e3 / sorted.length,
+                sorted[sorted.length / 2] / 1e3,
+                sorted[(int) (sorted.length * .99)] / 1e3,
+                sorted[sorted.length - 1] / 1e3);
+        System.out.print(game.getPerfStats().toCsv());
+    }
+}
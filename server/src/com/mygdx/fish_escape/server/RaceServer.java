@@ -0,0 +1,598 @@
+package com.mygdx.fish_escape.server;
+
+import com.mygdx.fish_escape.FishWorld;
+import com.mygdx.fish_escape.InputQueue;
+import com.mygdx.fish_escape.RaceProtocol;
+import com.mygdx.fish_escape.RaceSnapshot;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class runs races of the fish game for players that connect over UDP. Every player of a race
+ * swims the same seeded course in a world of their own, and the server is the only one that runs
+ * the worlds; the players only send their taps and the ticks they're played on. A player's world
+ * is played as far as the player says they played it, and never ahead of the race, so every tap
+ * is played on its tick and the world is the same as the one the player sees.
+ *
+ * Everything happens on one thread, which waits on the channel between ticks. Every few ticks
+ * each player is sent a snapshot of their world and of how far along the others are, written as
+ * the changes from the last snapshot they said they got. Only the rows that scrolled in and the
+ * sharks that moved are sent, so most snapshots are a few bytes and one thread keeps up with
+ * hundreds of races. To use more cores, run more servers on other ports.
+ */
+public class RaceServer implements Runnable {
+    private final int ticksPerSecond   = 60;
+    private final int snapshotInterval = 3;
+    // How long a race waits for more players, a race that's over stays up and a player is waited on
+    private final int joinTicks  = 5 * ticksPerSecond;
+    private final int overTicks  = 2 * ticksPerSecond;
+    private final int quietTicks = 10 * ticksPerSecond;
+    private final int playersPerRace;
+    private final int numberOfSharks = FishWorld.DEFAULT_NUMBER_OF_ENEMIES;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate(RaceProtocol.MAX_PACKET);
+    private final ByteBuffer sendBuffer    = ByteBuffer.allocate(RaceProtocol.MAX_PACKET);
+    private final Random random = new Random();
+    private final Player players[];
+    private final int freePlayers[];
+    private int numberOfFreePlayers;
+    private final List<Race> races = new ArrayList<Race>();
+    private Race waitingRace = null;
+    private int nextRace = 1;
+    private long tick = 0;
+    private volatile boolean running = true;
+    // What's been done so far, for the log
+    private volatile long ticks = 0;
+    private volatile long tickNanos = 0;
+    private volatile long maxTickNanos = 0;
+    private volatile long snapshotsSent = 0;
+    private volatile long fullSnapshotsSent = 0;
+    private volatile long bytesSent = 0;
+    private volatile long packetsReceived = 0;
+    private volatile long badPackets = 0;
+    private volatile int numberOfRaces = 0;
+    private volatile int numberOfPlayers = 0;
+
+    /*
+        This class is someone who joined, with the snapshots they were sent last.
+     */
+    private static class Player {
+        private final int id;
+        private boolean active = false;
+        private int nonce;
+        private int token;
+        private SocketAddress address;
+        private Race race;
+        private int slot;
+        private long lastHeard;
+        // The taps waiting for their ticks, which are kept as their times
+        private final InputQueue taps = new InputQueue(RaceProtocol.MAX_INPUTS);
+        // How many ticks the player played, the last tap that was queued, and the last snapshot
+        // the player said they got
+        private int frames;
+        private int inputSequence;
+        private int ack;
+        private int sequence;
+        private final RaceSnapshot snapshots[] = new RaceSnapshot[RaceProtocol.HISTORY];
+
+        private Player(final int id, final int numberOfSharks) {
+            this.id = id;
+            for (int i = 0; i < snapshots.length; i++) {
+                snapshots[i] = new RaceSnapshot(numberOfSharks);
+            }
+        }
+    }
+
+    /*
+        This class is a race, with a world for every slot.
+     */
+    private static class Race {
+        private final int id;
+        private final long seed;
+        private final Player players[];
+        private final FishWorld worlds[];
+        private int numberOfPlayers = 0;
+        private int status = RaceSnapshot.RACE_WAITING;
+        private final long created;
+        private long started;
+        private long ended;
+
+        private Race(final int id, final long seed, final int playersPerRace, final long created) {
+            this.id      = id;
+            this.seed    = seed;
+            this.created = created;
+            players = new Player[playersPerRace];
+            worlds  = new FishWorld[playersPerRace];
+        }
+    }
+
+    /*
+        This constructor opens the channel on the port, or on any free port if it's 0.
+     */
+    public RaceServer(final int port, final int playersPerRace, final int maxPlayers)
+            throws IOException {
+        if (playersPerRace > RaceSnapshot.MAX_PLAYERS) {
+            throw new IllegalArgumentException("At most " + RaceSnapshot.MAX_PLAYERS
+                    + " players fit in a race");
+        }
+        this.playersPerRace = playersPerRace;
+        players     = new Player[maxPlayers];
+        freePlayers = new int[maxPlayers];
+        for (int i = 0; i < maxPlayers; i++) {
+            freePlayers[i] = maxPlayers - 1 - i;
+        }
+        numberOfFreePlayers = maxPlayers;
+        channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, 1 << 20);
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, 1 << 20);
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+    }
+
+    public int getPort() { return channel.socket().getLocalPort(); }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /*
+        This function ticks the races at a fixed rate until the server is stopped, reading the
+        packets that arrive in between. If it falls far behind, it skips ahead rather than run a
+        burst of ticks.
+     */
+    @Override
+    public void run() {
+        final long tickTime = TimeUnit.SECONDS.toNanos(1) / ticksPerSecond;
+        long nextTick = System.nanoTime();
+        try {
+            while (running) {
+                final long now = System.nanoTime();
+                if (now >= nextTick) {
+                    tick();
+                    final long time = System.nanoTime() - now;
+                    tickNanos += time;
+                    maxTickNanos = Math.max(maxTickNanos, time);
+                    ticks++;
+                    nextTick += tickTime;
+                    if (now - nextTick > TimeUnit.SECONDS.toNanos(1)) {
+                        nextTick = now;
+                    }
+                } else {
+                    selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextTick - now)));
+                    selector.selectedKeys().clear();
+                }
+                receive();
+            }
+            selector.close();
+            channel.close();
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /*
+        This function reads every packet waiting on the channel. A packet that doesn't make sense
+        is counted and dropped.
+     */
+    private void receive() throws IOException {
+        while (true) {
+            receiveBuffer.clear();
+            final SocketAddress sender = channel.receive(receiveBuffer);
+            if (sender == null) {
+                return;
+            }
+            receiveBuffer.flip();
+            packetsReceived++;
+            try {
+                switch (receiveBuffer.get()) {
+                    case RaceProtocol.JOIN:
+                        join(sender);
+                        break;
+                    case RaceProtocol.INPUT:
+                        input(sender);
+                        break;
+                    case RaceProtocol.LEAVE:
+                        final Player player = findPlayer();
+                        if (player != null) {
+                            removePlayer(player);
+                        }
+                        break;
+                    default:
+                        badPackets++;
+                }
+            } catch (BufferUnderflowException exception) {
+                badPackets++;
+            } catch (IllegalArgumentException exception) {
+                badPackets++;
+            }
+        }
+    }
+
+    /*
+        This function puts a player in the race that's filling up. A player whose answer was lost
+        joins again, so they're sent the same answer.
+     */
+    private void join(final SocketAddress sender) throws IOException {
+        if (receiveBuffer.get() != RaceProtocol.VERSION) {
+            badPackets++;
+            return;
+        }
+        final int nonce = RaceProtocol.getVarint(receiveBuffer);
+        for (int i = 0; i < players.length; i++) {
+            final Player player = players[i];
+            if (player != null && player.active && player.nonce == nonce
+                    && sender.equals(player.address)) {
+                sendJoined(player);
+                return;
+            }
+        }
+        if (numberOfFreePlayers == 0) {
+            sendBuffer.clear();
+            sendBuffer.put((byte) RaceProtocol.REJECTED);
+            RaceProtocol.putVarint(sendBuffer, nonce);
+            send(sender);
+            return;
+        }
+        numberOfFreePlayers--;
+        final int id = freePlayers[numberOfFreePlayers];
+        if (players[id] == null) {
+            players[id] = new Player(id, numberOfSharks);
+        }
+        final Player player = players[id];
+        player.active        = true;
+        player.nonce         = nonce;
+        player.token         = random.nextInt();
+        player.address       = sender;
+        player.lastHeard     = tick;
+        player.frames        = 0;
+        player.inputSequence = 0;
+        player.ack           = 0;
+        player.sequence      = 0;
+        player.taps.clear();
+        if (waitingRace == null || waitingRace.numberOfPlayers == playersPerRace) {
+            waitingRace = new Race(nextRace++, random.nextLong(), playersPerRace, tick);
+            races.add(waitingRace);
+            numberOfRaces = races.size();
+        }
+        final Race race = waitingRace;
+        int slot = 0;
+        while (race.players[slot] != null || race.worlds[slot] != null) {
+            slot++;
+        }
+        race.players[slot] = player;
+        race.worlds[slot]  = new FishWorld(race.seed);
+        race.numberOfPlayers++;
+        player.race = race;
+        player.slot = slot;
+        numberOfPlayers++;
+        sendJoined(player);
+    }
+
+    private void sendJoined(final Player player) throws IOException {
+        sendBuffer.clear();
+        sendBuffer.put((byte) RaceProtocol.JOINED);
+        RaceProtocol.putVarint(sendBuffer, player.nonce);
+        RaceProtocol.putVarint(sendBuffer, player.id);
+        sendBuffer.putInt(player.token);
+        RaceProtocol.putVarint(sendBuffer, player.race.id);
+        sendBuffer.put((byte) player.slot);
+        sendBuffer.put((byte) numberOfSharks);
+        sendBuffer.putLong(player.race.seed);
+        send(player.address);
+    }
+
+    /*
+        This function queues the taps of a player that weren't queued yet, and notes how many ticks
+        they played and the last snapshot they got. The world isn't played past a tap that didn't
+        fit in the queue, since it would be missed.
+     */
+    private void input(final SocketAddress sender) {
+        final Player player = findPlayer();
+        if (player == null) {
+            return;
+        }
+        player.address   = sender;
+        player.lastHeard = tick;
+        final int ack = RaceProtocol.getVarint(receiveBuffer);
+        if (ack > player.ack && ack <= player.sequence) {
+            player.ack = ack;
+        }
+        int frames = RaceProtocol.getVarint(receiveBuffer);
+        final int firstTap = RaceProtocol.getVarint(receiveBuffer);
+        final int numberOfTaps = receiveBuffer.get();
+        for (int i = 0; i < numberOfTaps; i++) {
+            final int input = receiveBuffer.get();
+            final int tapTick = RaceProtocol.getVarint(receiveBuffer);
+            if (firstTap + i <= player.inputSequence) {
+                continue;
+            }
+            if (firstTap + i != player.inputSequence + 1
+                    || input != FishWorld.INPUT_LEFT && input != FishWorld.INPUT_RIGHT
+                    || !player.taps.add(input, tapTick)) {
+                frames = Math.min(frames, tapTick);
+                break;
+            }
+            player.inputSequence++;
+        }
+        if (frames > player.frames) {
+            player.frames = frames;
+        }
+    }
+
+    /*
+        This function reads who a packet is from, and returns them if the token matches.
+     */
+    private Player findPlayer() {
+        final int id = RaceProtocol.getVarint(receiveBuffer);
+        final int token = receiveBuffer.getInt();
+        if (id >= players.length || players[id] == null || !players[id].active
+                || players[id].token != token) {
+            badPackets++;
+            return null;
+        }
+        return players[id];
+    }
+
+    /*
+        This function takes a player out of their race. Their world keeps going without them,
+        unless nobody is left in the race.
+     */
+    private void removePlayer(final Player player) {
+        final Race race = player.race;
+        race.players[player.slot] = null;
+        if (race.status == RaceSnapshot.RACE_WAITING) {
+            race.worlds[player.slot] = null;
+            race.numberOfPlayers--;
+        }
+        player.active  = false;
+        player.race    = null;
+        player.address = null;
+        freePlayers[numberOfFreePlayers] = player.id;
+        numberOfFreePlayers++;
+        numberOfPlayers--;
+    }
+
+    /*
+        This function moves every race along by one tick, and sends the snapshots that are due.
+     */
+    private void tick() throws IOException {
+        tick++;
+        for (int i = races.size() - 1; i >= 0; i--) {
+            final Race race = races.get(i);
+            dropQuietPlayers(race);
+            if (race.status == RaceSnapshot.RACE_WAITING
+                    && (race.numberOfPlayers == playersPerRace || tick - race.created >= joinTicks)
+                    && race.numberOfPlayers > 0) {
+                race.status  = RaceSnapshot.RACE_RUNNING;
+                race.started = tick;
+                if (race == waitingRace) {
+                    waitingRace = null;
+                }
+            }
+            if (race.status == RaceSnapshot.RACE_RUNNING) {
+                tickRace(race);
+            }
+            if (isEmpty(race) || race.status == RaceSnapshot.RACE_OVER
+                    && tick - race.ended >= overTicks) {
+                removeRace(i);
+                continue;
+            }
+            if (tick % snapshotInterval == 0) {
+                sendSnapshots(race);
+            }
+        }
+    }
+
+    /*
+        This function takes out the players that weren't heard from in a while, or who fell that
+        far behind the race.
+     */
+    private void dropQuietPlayers(final Race race) {
+        final long raceFrames = race.status == RaceSnapshot.RACE_RUNNING ? tick - race.started : 0;
+        for (int slot = 0; slot < playersPerRace; slot++) {
+            final Player player = race.players[slot];
+            if (player != null && (tick - player.lastHeard > quietTicks
+                    || raceFrames - player.frames > quietTicks)) {
+                removePlayer(player);
+            }
+        }
+    }
+
+    private boolean isEmpty(final Race race) {
+        for (int slot = 0; slot < playersPerRace; slot++) {
+            if (race.players[slot] != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+        This function plays every world of a race as far as it can go: as far as its player played
+        it, but not ahead of the race, which plays one tick the tick it starts. Each tap is played
+        on its tick, or on the next one if the world is past it already. The world of a player who
+        left goes on as the race does, without taps. The race is over once every fish finished or
+        was eaten.
+     */
+    private void tickRace(final Race race) {
+        final long raceFrames = tick - race.started + 1;
+        boolean over = true;
+        for (int slot = 0; slot < playersPerRace; slot++) {
+            final FishWorld world = race.worlds[slot];
+            if (world == null) {
+                continue;
+            }
+            final Player player = race.players[slot];
+            final long frames = player == null ? raceFrames : Math.min(player.frames, raceFrames);
+            while (world.getFrames() < frames) {
+                int input = FishWorld.INPUT_NONE;
+                if (player != null && !player.taps.isEmpty()
+                        && player.taps.peekTime() <= world.getFrames()) {
+                    input = player.taps.peekInput();
+                    player.taps.remove();
+                }
+                world.tick(input);
+            }
+            over &= world.isOver();
+        }
+        if (over) {
+            race.status = RaceSnapshot.RACE_OVER;
+            race.ended  = tick;
+        }
+    }
+
+    private void removeRace(final int i) {
+        final Race race = races.get(i);
+        for (int slot = 0; slot < playersPerRace; slot++) {
+            if (race.players[slot] != null) {
+                removePlayer(race.players[slot]);
+            }
+        }
+        if (race == waitingRace) {
+            waitingRace = null;
+        }
+        // The order of the races doesn't matter, so the last one takes the place of this one
+        races.set(i, races.get(races.size() - 1));
+        races.remove(races.size() - 1);
+        numberOfRaces = races.size();
+    }
+
+    /*
+        This function sends every player of a race a snapshot, written against the last one they
+        got if it's still kept, or whole if it isn't.
+     */
+    private void sendSnapshots(final Race race) throws IOException {
+        for (int slot = 0; slot < playersPerRace; slot++) {
+            final Player player = race.players[slot];
+            if (player == null) {
+                continue;
+            }
+            player.sequence++;
+            final RaceSnapshot snapshot = player.snapshots[player.sequence % RaceProtocol.HISTORY];
+            snapshot.capture(race.worlds[slot], player.sequence, player.inputSequence);
+            snapshot.setRace(race.status, playersPerRace);
+            for (int other = 0; other < playersPerRace; other++) {
+                final FishWorld world = race.worlds[other];
+                if (world == null) {
+                    snapshot.setPlayer(other, 0, 0, RaceSnapshot.PLAYER_EMPTY, 0);
+                } else {
+                    snapshot.setPlayer(other, world.getMovesLeft(), world.getFishX(),
+                            status(world), world.getPoints());
+                }
+            }
+            RaceSnapshot baseline = null;
+            if (player.ack > 0 && player.sequence - player.ack < RaceProtocol.HISTORY) {
+                baseline = player.snapshots[player.ack % RaceProtocol.HISTORY];
+            }
+            sendBuffer.clear();
+            sendBuffer.put((byte) RaceProtocol.SNAPSHOT);
+            RaceProtocol.putVarint(sendBuffer, player.id);
+            RaceProtocol.putVarint(sendBuffer, player.sequence);
+            RaceProtocol.putVarint(sendBuffer, baseline == null ? 0 : player.ack);
+            snapshot.write(sendBuffer, baseline);
+            bytesSent += sendBuffer.position();
+            send(player.address);
+            snapshotsSent++;
+            if (baseline == null) {
+                fullSnapshotsSent++;
+            }
+        }
+    }
+
+    private static int status(final FishWorld world) {
+        if (world.isEaten()) {
+            return RaceSnapshot.PLAYER_EATEN;
+        }
+        return world.getMovesLeft() <= 0 ?
+                RaceSnapshot.PLAYER_FINISHED : RaceSnapshot.PLAYER_SWIMMING;
+    }
+
+    /*
+        This function sends what's in the send buffer. If the socket's buffer is full the packet
+        is dropped, like it could have been on the way.
+     */
+    private void send(final SocketAddress address) throws IOException {
+        sendBuffer.flip();
+        channel.send(sendBuffer, address);
+    }
+
+    /*
+        This function returns a snapshot the server sent a player, if it's still kept. It's only
+        safe to call once the server stopped.
+     */
+    public RaceSnapshot getSnapshot(final int player, final int sequence) {
+        if (player < 0 || player >= players.length || players[player] == null) {
+            return null;
+        }
+        final RaceSnapshot snapshot = players[player].snapshots[sequence % RaceProtocol.HISTORY];
+        return snapshot.getSequence() == sequence ? snapshot : null;
+    }
+
+    public long getTicks() { return ticks; }
+
+    public long getTickNanos() { return tickNanos; }
+
+    public long getMaxTickNanos() { return maxTickNanos; }
+
+    public long getSnapshotsSent() { return snapshotsSent; }
+
+    public long getFullSnapshotsSent() { return fullSnapshotsSent; }
+
+    public long getBytesSent() { return bytesSent; }
+
+    public long getPacketsReceived() { return packetsReceived; }
+
+    public long getBadPackets() { return badPackets; }
+
+    public int getNumberOfRaces() { return numberOfRaces; }
+
+    public int getNumberOfPlayers() { return numberOfPlayers; }
+
+    /*
+        This function runs a server and logs what it's doing every few seconds. The arguments are
+        the port and how many players there are in a race.
+     */
+    public static void main(final String[] args) throws Exception {
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        final int playersPerRace = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        final RaceServer server = new RaceServer(port, playersPerRace, 4096);
+        final Thread thread = new Thread(server, "race-server");
+        thread.start();
+        System.out.println("Racing on port " + server.getPort() + " with " + playersPerRace
+                + " players per race");
+        long ticks = 0;
+        long tickNanos = 0;
+        long snapshots = 0;
+        long bytes = 0;
+        while (thread.isAlive()) {
+            thread.join(5000);
+            final long newTicks = server.getTicks() - ticks;
+            final long newSnapshots = server.getSnapshotsSent() - snapshots;
+            System.out.printf("races %d players %d tick %.1f us (max %.1f) snapshots %d bytes %.1f%n",
+                    server.getNumberOfRaces(), server.getNumberOfPlayers(),
+                    newTicks == 0 ? 0 : (server.getTickNanos() - tickNanos) / 1e3 / newTicks,
+                    server.getMaxTickNanos() / 1e3, newSnapshots,
+                    newSnapshots == 0 ? 0 : (server.getBytesSent() - bytes) / (double) newSnapshots);
+            ticks     = server.getTicks();
+            tickNanos = server.getTickNanos();
+            snapshots = server.getSnapshotsSent();
+            bytes     = server.getBytesSent();
+        }
+    }
+}
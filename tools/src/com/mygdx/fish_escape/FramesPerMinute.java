@@ -0,0 +1,148 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.backends.headless.mock.graphics.MockGraphics;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.mygdx.fish_escape.headless.MockGL;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This program plays the whole game on the headless backend for a while, drawing every frame,
+ * and then again drawing frames only on demand, and prints how many frames were drawn per minute
+ * each way. The headless backend can't wait for a frame to be asked for, so the display refreshes
+ * 60 times a second and the game is only drawn when it wanted the frame by then, with the time
+ * since it was last drawn as its frame time. A player taps the way the hints say, a few times a
+ * second at most, and restarts a second after every round.
+ * It is in the game's package so it can tap and restart without a screen to touch.
+ *
+ * Usage: FramesPerMinute [seconds each way]
+ * It has to be run from android/assets, where the game finds its assets.
+ */
+public class FramesPerMinute extends ApplicationAdapter {
+    private static final int refreshRate = 60;
+    // How fast the player taps, and how long they look at the end screen
+    private static final long tapInterval  = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long restartDelay = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean renderOnDemand;
+    private final long duration;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private FishEscape game;
+    private long start = 0;
+    private long lastFrame = 0;
+    private long lastTap = 0;
+    private long roundOver = 0;
+    private int refreshes = 0;
+    private int frames = 0;
+    private int taps = 0;
+    private int rounds = 0;
+
+    private FramesPerMinute(final boolean renderOnDemand, final long duration) {
+        this.renderOnDemand = renderOnDemand;
+        this.duration = duration;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        final long duration = TimeUnit.SECONDS.toNanos(seconds);
+        final FramesPerMinute continuous = run(false, duration);
+        final FramesPerMinute onDemand = run(true, duration);
+        continuous.print("continuous");
+        onDemand.print("on demand");
+        System.out.printf("%.1f times fewer frames on demand%n",
+                continuous.frames / (double) Math.max(onDemand.frames, 1));
+        System.exit(0);
+    }
+
+    private static FramesPerMinute run(final boolean renderOnDemand, final long duration)
+            throws InterruptedException {
+        final FramesPerMinute run = new FramesPerMinute(renderOnDemand, duration);
+        final HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.renderInterval = 1f / refreshRate;
+        new HeadlessApplication(run, config);
+        run.finished.await();
+        return run;
+    }
+
+    @Override
+    public void create() {
+        Gdx.gl = Gdx.gl20 = new MockGL();
+        // The game only sees the time between the frames it draws, not between refreshes
+        Gdx.graphics = new MockGraphics() {
+            @Override
+            public float getDeltaTime() {
+                return (TimeUtils.nanoTime() - lastFrame) / 1e9f;
+            }
+        };
+        game = new FishEscape(false, renderOnDemand);
+        game.create();
+    }
+
+    /*
+        This function is one refresh of the display. The player taps or restarts, and the game is
+        drawn if it wants a frame by now.
+     */
+    @Override
+    public void render() {
+        final long now = TimeUtils.nanoTime();
+        if (!game.isLoaded()) {
+            game.render();
+            return;
+        }
+        if (start == 0) {
+            start = now;
+            lastFrame = now;
+        }
+        refreshes++;
+        play(now);
+        if (now >= game.getNextFrameTime()) {
+            game.render();
+            lastFrame = now;
+            frames++;
+        }
+        if (now - start >= duration) {
+            Gdx.app.exit();
+        }
+    }
+
+    /*
+        This function taps the way the hint says, unless the last tap was too recent, and restarts
+        the game a while after the round is over.
+     */
+    private void play(final long now) {
+        final FishWorld world = game.getWorld();
+        if (world.isOver()) {
+            if (roundOver == 0) {
+                roundOver = now;
+            } else if (now - roundOver >= restartDelay) {
+                roundOver = 0;
+                rounds++;
+                game.restart();
+            }
+            return;
+        }
+        final int hint = world.getHintInput();
+        if (hint != FishWorld.INPUT_NONE && now - lastTap >= tapInterval) {
+            lastTap = now;
+            taps++;
+            game.tap(hint);
+        }
+    }
+
+    private void print(final String name) {
+        System.out.printf("%s: %d frames of %d refreshes, %.0f frames per minute, %d taps, "
+                        + "%d rounds%n", name, frames, refreshes,
+                frames * 60.0 * refreshRate / Math.max(refreshes, 1), taps, rounds);
+    }
+
+    @Override
+    public void dispose() {
+        game.dispose();
+        finished.countDown();
+    }
+}
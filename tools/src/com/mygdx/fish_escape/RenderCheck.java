@@ -0,0 +1,207 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.backends.headless.mock.graphics.MockGraphics;
+import com.mygdx.fish_escape.headless.MockGL;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * This program draws the whole game on the headless backend and checks that drawing a frame
+ * doesn't allocate once the game has warmed up, while the round is played and while the end screen
+ * is up. Text that's built again every frame, like "Crackers: " + points, makes it fail. Only the
+ * steady frames count: a frame where the score, the level, the par or the round changes lays its
+ * text out again and records the round, and is only reported. The mock GL doesn't allocate, so
+ * whatever is allocated is the game's. It is in the game's package so it can tap and restart
+ * without a screen to touch.
+ *
+ * It also checks how many times every frame flushed the batch. The background is one texture and
+ * everything else but the end screen is in the sprite atlas, so a round takes two. The end screen
+ * is drawn with its own shader and texture, which takes two more. A frame that's split into more
+ * batches, or draws with a ShapeRenderer, makes it fail. It exits with 1 if a steady frame
+ * allocated or a frame flushed too often.
+ *
+ * It should be run with -Xint. The JIT leaves out objects that never leave a method, and when it
+ * has to throw that code away it makes them after all, which shows up as a few hundred bytes
+ * in a frame now and then that the game didn't ask for.
+ *
+ * Usage: RenderCheck [steady frames]
+ * The game finds its assets in android/assets, so it has to be run from there or have it on the
+ * classpath.
+ */
+public class RenderCheck extends ApplicationAdapter {
+    // The screen is the size of a small phone, and every frame is one tick
+    private static final int width  = 480;
+    private static final int height = 800;
+    private static final float frameTime = 1 / 60f;
+    // Nothing is measured until the game has drawn this many frames
+    private static final int warmUpFrames = 2000;
+    // The fish moves the way the hints say every so many frames, and the end screen is up for
+    // ten times that
+    private static final int tapFrames = 10;
+    // How many times a frame flushes the batch while the round is played, and with the end screen
+    private static final int roundRenderCalls = 2;
+    private static final int endScreenRenderCalls = 4;
+    private static final CountDownLatch finished = new CountDownLatch(1);
+    private static boolean passed = false;
+
+    private final int frames;
+    private FishEscape game;
+    private int frame = 0;
+    // What the HUD showed before the last frame
+    private int points;
+    private int highScore;
+    private int level;
+    private int par;
+    private boolean parFinal;
+    private boolean over;
+    // How much the frames after the warm up allocated, steady or not
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private long allocationOverhead = 0;
+    private long steadyBytes = 0;
+    private long changedBytes = 0;
+    private int steadyFrames = 0;
+    private int changedFrames = 0;
+    private int endScreenFrames = 0;
+    // The frames that flushed the batch a different number of times than they should have
+    private int wrongRenderCalls = 0;
+
+    private RenderCheck(final int frames) {
+        this.frames = frames;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int frames = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.renderInterval = 0;
+        new HeadlessApplication(new RenderCheck(frames), config);
+        finished.await();
+        System.exit(passed ? 0 : 1);
+    }
+
+    @Override
+    public void create() {
+        // Reading the count can allocate a little itself, which isn't the game's
+        allocationOverhead = allocatedBytes();
+        allocationOverhead = allocatedBytes() - allocationOverhead;
+        Gdx.gl = Gdx.gl20 = new MockGL();
+        Gdx.graphics = new MockGraphics() {
+            @Override
+            public int getWidth() { return width; }
+
+            @Override
+            public int getHeight() { return height; }
+
+            @Override
+            public float getDeltaTime() { return frameTime; }
+        };
+        game = new FishEscape(false, false);
+        game.create();
+    }
+
+    /*
+        This function draws one frame of the game and measures what it allocated and how many
+        times it flushed the batch. The player taps and restarts between the frames, since that
+        isn't drawing.
+     */
+    @Override
+    public void render() {
+        if (!game.isLoaded()) {
+            game.render();
+            return;
+        }
+        play();
+        long allocated = allocatedBytes();
+        game.render();
+        allocated = allocatedBytes() - allocated - allocationOverhead;
+        if (++frame <= warmUpFrames) {
+            return;
+        }
+        final int renderCalls = game.getWorld().isOver() ? endScreenRenderCalls : roundRenderCalls;
+        if (game.getRenderCalls() != renderCalls) {
+            if (wrongRenderCalls++ == 0) {
+                System.out.println("Frame " + frame + " flushed the batch " + game.getRenderCalls()
+                        + " times instead of " + renderCalls);
+            }
+        }
+        if (hudChanged()) {
+            changedBytes += allocated;
+            changedFrames++;
+        } else {
+            steadyBytes += allocated;
+            steadyFrames++;
+            if (over) {
+                endScreenFrames++;
+            }
+        }
+        if (steadyFrames == frames) {
+            System.out.println("Allocated " + steadyBytes + " bytes drawing " + steadyFrames
+                    + " steady frames, " + endScreenFrames + " of them end screens");
+            System.out.println("Allocated " + changedBytes + " bytes drawing " + changedFrames
+                    + " frames where the HUD changed");
+            System.out.println(wrongRenderCalls + " frames flushed the batch too often or too "
+                    + "rarely");
+            passed = steadyBytes <= 0 && wrongRenderCalls == 0;
+            System.out.println(passed ? "Drawing didn't allocate" : "Drawing allocated or flushed "
+                    + "the batch too often");
+            Gdx.app.exit();
+        }
+    }
+
+    /*
+        This function taps the way the hint says every few frames, and restarts the game a while
+        after the round is over so the end screen is drawn too.
+     */
+    private void play() {
+        final FishWorld world = game.getWorld();
+        if (frame % tapFrames != 0) {
+            return;
+        }
+        if (world.isOver()) {
+            if (frame % (tapFrames * 10) == 0) {
+                game.restart();
+            }
+        } else if (world.getHintInput() != FishWorld.INPUT_NONE) {
+            game.tap(world.getHintInput());
+        }
+    }
+
+    /*
+        This function checks if anything the HUD shows changed since it was last called.
+     */
+    private boolean hudChanged() {
+        final FishWorld world = game.getWorld();
+        final boolean changed = points != world.getPoints() || highScore != world.getHighScore()
+                || level != world.getLevel() || par != world.getParTaps()
+                || parFinal != world.isParFinal() || over != world.isOver();
+        points    = world.getPoints();
+        highScore = world.getHighScore();
+        level     = world.getLevel();
+        par       = world.getParTaps();
+        parFinal  = world.isParFinal();
+        over      = world.isOver();
+        return changed;
+    }
+
+    @Override
+    public void dispose() {
+        game.dispose();
+        finished.countDown();
+    }
+
+    /*
+        This function returns how many bytes this thread has allocated, or 0 if the JVM can't tell.
+     */
+    private long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,168 @@
+package com.mygdx.fish_escape;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.mygdx.fish_escape.headless.MockGL;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * This program plays thousands of rounds of the whole game on the headless backend, restarting
+ * after every round the way the restart button does, and checks that the memory used stays flat:
+ * the GL objects, the managed textures, the native buffers and the heap. It also checks that
+ * playing and restarting a round doesn't allocate anything once the game has warmed up. It is in
+ * the game's package so it can end and restart the rounds without tapping. It exits with 1 if
+ * anything grew or was allocated.
+ *
+ * Usage: RestartSoak [rounds]
+ * The game finds its assets in android/assets, so it has to be run from there or have it on the
+ * classpath.
+ */
+public class RestartSoak extends ApplicationAdapter {
+    // Nothing is measured until the game has played this many rounds
+    private static final int warmUpRounds = 100;
+    // The heap may grow this much, for things like the JIT and the class caches
+    private static final long maxHeapGrowth = 1024 * 1024;
+    // A round that's still going after this many ticks is ended anyway
+    private static final int maxRoundTicks = 100000;
+    private static final CountDownLatch finished = new CountDownLatch(1);
+    private static boolean passed = false;
+
+    private final int rounds;
+    private final MockGL gl = new MockGL();
+    private FishEscape game;
+    private int round = 0;
+    private Sample start;
+    // How much the game allocated while playing and restarting the rounds after the warm up, on
+    // JVMs that can tell. Drawing is checked by RenderCheck instead.
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private long allocationOverhead = 0;
+    private long allocatedBytes = 0;
+
+    /*
+        This class holds the memory used at one point of the soak.
+     */
+    private static class Sample {
+        private int glObjects;
+        private int managedTextures;
+        private long nativeBytes;
+        private long heapBytes;
+
+        @Override
+        public String toString() {
+            return String.format("%d GL objects, %d managed textures, %d native bytes, %d heap bytes",
+                    glObjects, managedTextures, nativeBytes, heapBytes);
+        }
+    }
+
+    private RestartSoak(final int rounds) {
+        this.rounds = rounds;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        final HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.renderInterval = 0;
+        new HeadlessApplication(new RestartSoak(rounds), config);
+        finished.await();
+        System.exit(passed ? 0 : 1);
+    }
+
+    @Override
+    public void create() {
+        // Reading the count can allocate a little itself, which isn't the game's
+        allocationOverhead = allocatedBytes();
+        allocationOverhead = allocatedBytes() - allocationOverhead;
+        Gdx.gl = Gdx.gl20 = gl;
+        game = new FishEscape();
+        game.create();
+    }
+
+    /*
+        This function plays one round each frame: the world is ticked until the round is over, the
+        end screen is drawn, and the game is restarted and drawn again.
+     */
+    @Override
+    public void render() {
+        game.render();
+        if (!game.isLoaded()) {
+            return;
+        }
+        final FishWorld world = game.getWorld();
+        long allocated = allocatedBytes();
+        for (int tick = 0; tick < maxRoundTicks && !world.isOver(); tick++) {
+            world.tick(FishWorld.INPUT_NONE);
+        }
+        allocated = allocatedBytes() - allocated - allocationOverhead;
+        game.render();
+        long restartAllocated = allocatedBytes();
+        game.restart();
+        allocated += allocatedBytes() - restartAllocated - allocationOverhead;
+        game.render();
+        round++;
+        if (round > warmUpRounds) {
+            allocatedBytes += allocated;
+        }
+        if (round == warmUpRounds) {
+            start = sample();
+            System.out.println("Round " + round + ": " + start);
+        } else if (round > warmUpRounds && (round - warmUpRounds) % (rounds / 10 + 1) == 0) {
+            System.out.println("Round " + round + ": " + sample());
+        }
+        if (round == warmUpRounds + rounds) {
+            final Sample end = sample();
+            System.out.println("Round " + round + ": " + end);
+            System.out.println("Allocated " + allocatedBytes + " bytes playing and restarting "
+                    + rounds + " rounds");
+            passed = end.glObjects == start.glObjects
+                    && end.managedTextures == start.managedTextures
+                    && end.nativeBytes == start.nativeBytes
+                    && end.heapBytes - start.heapBytes < maxHeapGrowth
+                    && allocatedBytes <= 0;
+            System.out.println(passed ? "Memory stayed flat" : "Memory grew");
+            Gdx.app.exit();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        game.dispose();
+        finished.countDown();
+    }
+
+    /*
+        This function returns how many bytes this thread has allocated, or 0 if the JVM can't tell.
+     */
+    private long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /*
+        This function measures the memory used right now, after collecting the garbage.
+     */
+    private Sample sample() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        final Sample sample = new Sample();
+        sample.glObjects       = gl.getLiveObjects();
+        sample.managedTextures = Texture.getNumManagedTextures();
+        sample.nativeBytes     = BufferUtils.getAllocatedBytesUnsafe();
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            sample.nativeBytes += pool.getMemoryUsed();
+        }
+        sample.heapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        return sample;
+    }
+}
@@ -0,0 +1,158 @@
+package com.mygdx.fish_escape.tools;
+
+import com.mygdx.fish_escape.FishWorld;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This program plays thousands of seeded games of Fish Escape with a scripted bot, spread over all
+ * of the cores, and prints how every level went: how many rounds were won, how many crackers were
+ * picked up and what ate the fish. Each game starts at the first level and keeps going until the
+ * fish is eaten or the last level is won, so the later levels show how the faster moveTime plays.
+ *
+ * Usage: DifficultyEvaluator [games] [levels] [reaction ticks] [first seed]
+ */
+public class DifficultyEvaluator {
+    // Ways a round can end besides winning, the first ones are FishWorld's death causes
+    private static final int TIMEOUT = 4;
+    private static final String causeNames[] = {"", "shark", "jump", "blocked", "timeout"};
+    // A round that runs this many times longer than it should is counted as stuck
+    private static final int roundTimeLimit = 20;
+
+    /*
+        This class adds up the rounds played at one level.
+     */
+    private static class LevelStats {
+        private int moveTime;
+        private long rounds;
+        private long wins;
+        private long crackers;
+        private long ticks;
+        private long endings[] = new long[causeNames.length];
+
+        private void add(final LevelStats other) {
+            moveTime = Math.max(moveTime, other.moveTime);
+            rounds   += other.rounds;
+            wins     += other.wins;
+            crackers += other.crackers;
+            ticks    += other.ticks;
+            for (int i = 0; i < endings.length; i++) {
+                endings[i] += other.endings[i];
+            }
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int games         = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final int levels        = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final int reactionTicks = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        final long firstSeed    = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        final int threads       = Runtime.getRuntime().availableProcessors();
+        final long startTime = System.nanoTime();
+        // Every thread plays every threads-th game, so the seeds don't depend on the core count
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final List<Future<LevelStats[]>> results = new ArrayList<Future<LevelStats[]>>();
+        for (int thread = 0; thread < threads; thread++) {
+            final int firstGame = thread;
+            results.add(pool.submit(new Callable<LevelStats[]>() {
+                @Override
+                public LevelStats[] call() {
+                    final LevelStats stats[] = createStats(levels);
+                    for (int game = firstGame; game < games; game += threads) {
+                        playGame(firstSeed + game, levels, reactionTicks, stats);
+                    }
+                    return stats;
+                }
+            }));
+        }
+        final LevelStats total[] = createStats(levels);
+        for (Future<LevelStats[]> result : results) {
+            final LevelStats stats[] = result.get();
+            for (int level = 0; level < levels; level++) {
+                total[level].add(stats[level]);
+            }
+        }
+        pool.shutdown();
+        final double seconds = (System.nanoTime() - startTime) / 1e9;
+        print(total, games, threads, seconds);
+    }
+
+    private static LevelStats[] createStats(final int levels) {
+        final LevelStats stats[] = new LevelStats[levels];
+        for (int level = 0; level < levels; level++) {
+            stats[level] = new LevelStats();
+        }
+        return stats;
+    }
+
+    /*
+        This function plays one game, from the first level until the fish is eaten, gets stuck or
+        wins the last level.
+     */
+    private static void playGame(final long seed, final int levels, final int reactionTicks,
+                                 final LevelStats stats[]) {
+        final FishWorld world = new FishWorld(seed);
+        final ScriptedBot bot = new ScriptedBot(reactionTicks);
+        while (world.getLevel() <= levels) {
+            final LevelStats level = stats[world.getLevel() - 1];
+            final int startPoints = world.getPoints();
+            final long tickLimit = (long) world.getMovesLeft() * world.getMoveTime() * roundTimeLimit;
+            long ticks = 0;
+            level.moveTime = world.getMoveTime();
+            level.rounds++;
+            while (!world.isOver() && ticks < tickLimit) {
+                world.tick(bot.decide(world));
+                ticks++;
+            }
+            level.ticks += ticks;
+            level.crackers += world.getPoints() - startPoints;
+            if (!world.isOver()) {
+                level.endings[TIMEOUT]++;
+                return;
+            }
+            if (world.isEaten()) {
+                level.endings[world.getDeathCause()]++;
+                return;
+            }
+            level.wins++;
+            world.restart();
+            bot.reset();
+        }
+    }
+
+    private static void print(final LevelStats stats[], final int games, final int threads,
+                              final double seconds) {
+        long rounds = 0;
+        for (LevelStats level : stats) {
+            rounds += level.rounds;
+        }
+        System.out.printf("%d games, %d rounds on %d threads in %.2f s%n",
+                games, rounds, threads, seconds);
+        System.out.printf("%5s %8s %7s %8s %8s", "level", "moveTime", "rounds", "win rate", "crackers");
+        for (int cause = 1; cause < causeNames.length; cause++) {
+            System.out.printf(" %8s", causeNames[cause]);
+        }
+        System.out.println();
+        for (int level = 0; level < stats.length; level++) {
+            final LevelStats levelStats = stats[level];
+            if (levelStats.rounds == 0) {
+                continue;
+            }
+            System.out.printf("%5d %8d %7d %7.1f%% %8.2f",
+                    level + 1,
+                    levelStats.moveTime,
+                    levelStats.rounds,
+                    100.0 * levelStats.wins / levelStats.rounds,
+                    (double) levelStats.crackers / levelStats.rounds);
+            for (int cause = 1; cause < causeNames.length; cause++) {
+                System.out.printf(" %8d", levelStats.endings[cause]);
+            }
+            System.out.println();
+        }
+    }
+}
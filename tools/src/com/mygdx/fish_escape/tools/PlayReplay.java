@@ -0,0 +1,28 @@
+package com.mygdx.fish_escape.tools;
+
+import com.mygdx.fish_escape.FishWorld;
+import com.mygdx.fish_escape.ReplayPlayer;
+
+import java.io.FileInputStream;
+
+/**
+ * This program plays back recorded games without drawing them and prints how each one ended.
+ *
+ * Usage: PlayReplay replay...
+ */
+public class PlayReplay {
+    public static void main(final String[] args) throws Exception {
+        for (String file : args) {
+            final ReplayPlayer player = new ReplayPlayer(new FileInputStream(file));
+            final FishWorld world = player.playToEnd();
+            System.out.printf("%s: seed %d, %d ticks, level %d, %d crackers, %d moves left%s%n",
+                    file,
+                    player.getSeed(),
+                    world.getFrames(),
+                    world.getLevel(),
+                    world.getPoints(),
+                    world.getMovesLeft(),
+                    world.isEaten() ? ", eaten" : "");
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.mygdx.fish_escape.tools;
+
+import com.mygdx.fish_escape.FishWorld;
+import com.mygdx.fish_escape.RaceClient;
+import com.mygdx.fish_escape.RaceProtocol;
+import com.mygdx.fish_escape.RaceSnapshot;
+import com.mygdx.fish_escape.server.RaceServer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This program runs a race server and fills it with bots over the loopback, to see how many races
+ * one server keeps up with. The bots share one channel and tap left or right now and then, and
+ * join the next race when theirs is over, so there are always about as many races going. They
+ * don't play the worlds themselves, so the server plays them as the race goes, with every tap on
+ * the next tick. At the end the server is stopped and the last snapshot every bot read from the
+ * changes it was sent is checked against the one the server captured, so a snapshot that was
+ * written or read wrong shows up. It prints how busy the server thread was and how big the snapshots were, and exits with 1 if
+ * any snapshot didn't match.
+ *
+ * Usage: RaceLoadTest [races] [players per race] [seconds]
+ */
+public class RaceLoadTest {
+    private static final int framesPerSecond = 60;
+    // How often the bots send their taps, and how often one of them taps
+    private static final int sendInterval = 3;
+    private static final float tapChance  = 0.02f;
+
+    public static void main(final String[] args) throws Exception {
+        final int races = args.length > 0 ? Integer.parseInt(args[0]) : 250;
+        final int playersPerRace = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        final int numberOfBots = races * playersPerRace;
+        // The players of a race that's over are kept a little while after the bots moved on
+        final int maxPlayers = 2 * numberOfBots;
+        final RaceServer server = new RaceServer(0, playersPerRace, maxPlayers);
+        final Thread serverThread = new Thread(server, "race-server");
+        serverThread.start();
+        final InetSocketAddress address =
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+
+        final DatagramChannel channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 << 20);
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, 1 << 20);
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        channel.configureBlocking(false);
+        final ByteBuffer buffer = ByteBuffer.allocate(RaceProtocol.MAX_PACKET);
+        final RaceClient bots[] = new RaceClient[numberOfBots];
+        final RaceClient botsByPlayer[] = new RaceClient[maxPlayers];
+        final int generations[] = new int[numberOfBots];
+        int racesFinished = 0;
+        for (int i = 0; i < numberOfBots; i++) {
+            bots[i] = createBot(i);
+        }
+        final Random random = new Random(42);
+
+        final long frameTime = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+        final long start = System.nanoTime();
+        long serverCpuStart = -1;
+        long measuredStart = 0;
+        long snapshotsStart = 0;
+        long bytesStart = 0;
+        long nextFrame = start;
+        for (int frame = 0; frame < seconds * framesPerSecond; frame++) {
+            // Hand every packet that arrived to its bot
+            while (true) {
+                buffer.clear();
+                if (channel.receive(buffer) == null) {
+                    break;
+                }
+                buffer.flip();
+                buffer.mark();
+                final int type = buffer.get();
+                final int who = RaceProtocol.getVarint(buffer);
+                buffer.reset();
+                if (type == RaceProtocol.JOINED || type == RaceProtocol.REJECTED) {
+                    final RaceClient bot = bots[who % numberOfBots];
+                    bot.receive(buffer);
+                    if (bot.isJoined()) {
+                        botsByPlayer[bot.getPlayer()] = bot;
+                    }
+                } else if (type == RaceProtocol.SNAPSHOT && botsByPlayer[who] != null) {
+                    botsByPlayer[who].receive(buffer);
+                }
+            }
+            // Join, tap and send. A bot whose race is over leaves and joins the next one.
+            for (int i = 0; i < numberOfBots; i++) {
+                final RaceClient bot = bots[i];
+                buffer.clear();
+                if (!bot.isJoined()) {
+                    if (frame % framesPerSecond != i % framesPerSecond) {
+                        continue;
+                    }
+                    bot.writeJoin(buffer);
+                } else if (bot.getSnapshot() != null
+                        && bot.getSnapshot().getRaceStatus() == RaceSnapshot.RACE_OVER) {
+                    bot.writeLeave(buffer);
+                    racesFinished++;
+                    bots[i] = createBot(i + numberOfBots * ++generations[i]);
+                } else {
+                    if ((frame + i) % sendInterval != 0) {
+                        continue;
+                    }
+                    if (random.nextFloat() < tapChance * sendInterval) {
+                        bot.tap(random.nextBoolean() ? FishWorld.INPUT_LEFT : FishWorld.INPUT_RIGHT,
+                                0);
+                    }
+                    bot.writeInput(buffer);
+                }
+                buffer.flip();
+                channel.send(buffer, address);
+            }
+            // Start measuring once everyone had a second to join
+            if (frame == 2 * framesPerSecond) {
+                serverCpuStart = threadCpuTime(serverThread);
+                measuredStart  = System.nanoTime();
+                snapshotsStart = server.getSnapshotsSent();
+                bytesStart     = server.getBytesSent();
+            }
+            nextFrame += frameTime;
+            final long wait = nextFrame - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+        final long serverCpu = threadCpuTime(serverThread) - serverCpuStart;
+        final long measured  = System.nanoTime() - measuredStart;
+        final long snapshots = server.getSnapshotsSent() - snapshotsStart;
+        final long bytes     = server.getBytesSent() - bytesStart;
+        server.stop();
+        serverThread.join();
+        channel.close();
+
+        // Check the last snapshot of every bot against the server's, and see how big it would be whole
+        int joined = 0;
+        int checked = 0;
+        int mismatches = 0;
+        long received = 0;
+        long dropped = 0;
+        long fullBytes = 0;
+        for (int i = 0; i < numberOfBots; i++) {
+            final RaceClient bot = bots[i];
+            if (!bot.isJoined()) {
+                continue;
+            }
+            joined++;
+            received += bot.getSnapshotsReceived();
+            dropped  += bot.getSnapshotsDropped();
+            final RaceSnapshot snapshot = bot.getSnapshot();
+            if (snapshot == null) {
+                continue;
+            }
+            final RaceSnapshot expected = server.getSnapshot(bot.getPlayer(), snapshot.getSequence());
+            if (expected == null) {
+                continue;
+            }
+            checked++;
+            if (!snapshot.sameAs(expected)) {
+                mismatches++;
+            }
+            buffer.clear();
+            snapshot.write(buffer, null);
+            fullBytes += buffer.position();
+        }
+        System.out.printf("%d races of %d players, %d of %d bots joined%n",
+                races, playersPerRace, joined, numberOfBots);
+        System.out.printf("server thread busy %.1f%% of one core, tick %.1f us on average (max %.1f)%n",
+                100.0 * serverCpu / measured,
+                server.getTickNanos() / 1e3 / Math.max(server.getTicks(), 1),
+                server.getMaxTickNanos() / 1e3);
+        System.out.printf("%.0f snapshots/s, %.1f bytes on average (%.1f whole), %d sent whole%n",
+                snapshots * 1e9 / measured, bytes / (double) Math.max(snapshots, 1),
+                fullBytes / (double) Math.max(checked, 1), server.getFullSnapshotsSent());
+        System.out.printf("%d races finished, %d running at the end%n",
+                racesFinished / playersPerRace, server.getNumberOfRaces());
+        System.out.printf("bots read %d snapshots and dropped %d, %d bad packets%n",
+                received, dropped, server.getBadPackets());
+        System.out.printf("%d of %d last snapshots matched the server's%n",
+                checked - mismatches, checked);
+        System.exit(mismatches == 0 && checked > 0 ? 0 : 1);
+    }
+
+    private static RaceClient createBot(final int nonce) {
+        final RaceClient bot = new RaceClient(nonce);
+        bot.setFrames(Integer.MAX_VALUE);
+        return bot;
+    }
+
+    /*
+        This function returns how much CPU time a thread used, or 0 if the JVM can't tell.
+     */
+    private static long threadCpuTime(final Thread thread) {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadCpuTimeSupported()) {
+            return 0;
+        }
+        final long time = threads.getThreadCpuTime(thread.getId());
+        return Math.max(time, 0);
+    }
+}
@@ -0,0 +1,61 @@
+package com.mygdx.fish_escape.tools;
+
+import com.mygdx.fish_escape.FishWorld;
+
+/**
+ * This class plays the fish game like a simple player would. It only reacts every few ticks, and
+ * when an obstacle is right in front of the fish it swims to the nearest column with a free way
+ * forward. It doesn't try to dodge the sharks or grab crackers.
+ */
+public class ScriptedBot {
+    private final int reactionTicks;
+    private int ticksUntilAction = 0;
+
+    /*
+        This constructor creates a bot that takes at most one action every reactionTicks ticks.
+     */
+    public ScriptedBot(final int reactionTicks) {
+        this.reactionTicks = reactionTicks;
+    }
+
+    /*
+        This function picks the input for the next tick of a world.
+     */
+    public int decide(final FishWorld world) {
+        if (ticksUntilAction > 0) {
+            ticksUntilAction--;
+            return FishWorld.INPUT_NONE;
+        }
+        final int width = world.getNumberOfHorizontalCells();
+        final int x = world.getFishX();
+        final int y = world.getFishY();
+        // Keep swimming forward if nothing is in the way
+        if (world.hitsObstacle(x, y + 1)) {
+            // Look both ways along the fish's row for the closest way forward
+            boolean leftOpen = true;
+            boolean rightOpen = true;
+            for (int distance = 1; distance <= width / 2 && (leftOpen || rightOpen); distance++) {
+                final int leftX = (x - distance + width) % width;
+                final int rightX = (x + distance) % width;
+                leftOpen  = leftOpen && !world.hitsObstacle(leftX, y);
+                rightOpen = rightOpen && !world.hitsObstacle(rightX, y);
+                if (leftOpen && !world.hitsObstacle(leftX, y + 1)) {
+                    ticksUntilAction = reactionTicks;
+                    return FishWorld.INPUT_LEFT;
+                }
+                if (rightOpen && !world.hitsObstacle(rightX, y + 1)) {
+                    ticksUntilAction = reactionTicks;
+                    return FishWorld.INPUT_RIGHT;
+                }
+            }
+        }
+        return FishWorld.INPUT_NONE;
+    }
+
+    /*
+        This function gets the bot ready for a new round.
+     */
+    public void reset() {
+        ticksUntilAction = 0;
+    }
+}
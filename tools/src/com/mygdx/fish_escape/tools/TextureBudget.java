@@ -0,0 +1,134 @@
+package com.mygdx.fish_escape.tools;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.glutils.ETC1;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This program adds up how much GPU memory the textures the game loads take once they're uploaded,
+ * and prints it per texture. A PNG is decoded to the format its atlas page asks for, so it takes
+ * its width times its height times the bytes of that format, a third more with mipmaps. A KTX file
+ * is uploaded as it is, so it takes the size of its levels. It exits with 1 if the total is over
+ * the budget, so a texture that's added or grown without being compressed fails the build.
+ *
+ * Usage: TextureBudget budget-in-megabytes file...
+ *
+ * The files are atlases, PNGs or KTX files, relative to the working directory.
+ */
+public class TextureBudget {
+    private static final int megabyte = 1024 * 1024;
+    private static final int ktxHeader = 12 + 13 * 4;
+
+    public static void main(final String[] args) throws IOException {
+        final double budget = Double.parseDouble(args[0]);
+        long total = 0;
+        System.out.printf("%-26s %11s %-14s %10s%n", "texture", "size", "format", "bytes");
+        for (int i = 1; i < args.length; i++) {
+            final File file = new File(args[i]);
+            if (file.getName().endsWith(".atlas")) {
+                final TextureAtlas.TextureAtlasData atlas = new TextureAtlas.TextureAtlasData(
+                        new FileHandle(file), new FileHandle(file.getAbsoluteFile().getParentFile()),
+                        false);
+                for (TextureAtlas.TextureAtlasData.Page page : atlas.getPages()) {
+                    total += report(page.textureFile.file(), page.format, page.useMipMaps);
+                }
+            } else {
+                total += report(file, Pixmap.Format.RGBA8888, false);
+            }
+        }
+        System.out.printf("%-26s %11s %-14s %10d (%.2f MB of %.2f MB)%n", "total", "", "", total,
+                total / (double) megabyte, budget);
+        if (total > budget * megabyte) {
+            System.err.printf("The textures take %.2f MB of GPU memory, over the budget of %.2f MB%n",
+                    total / (double) megabyte, budget);
+            System.exit(1);
+        }
+    }
+
+    /*
+        This function prints how much GPU memory a texture takes and returns it. A PNG is uploaded
+        in the format it's loaded as.
+     */
+    private static long report(final File file, final Pixmap.Format format,
+                               final boolean useMipMaps) throws IOException {
+        final String name = file.getName();
+        final int width;
+        final int height;
+        final String uploaded;
+        long bytes;
+        if (name.endsWith(".ktx") || name.endsWith(".zktx")) {
+            final ByteBuffer ktx = readKtx(file, name.endsWith(".zktx"));
+            final int internalFormat = ktx.getInt(12 + 4 * 4);
+            width  = ktx.getInt(12 + 6 * 4);
+            height = ktx.getInt(12 + 7 * 4);
+            final int faces  = Math.max(ktx.getInt(12 + 10 * 4), 1);
+            final int levels = Math.max(ktx.getInt(12 + 11 * 4), 1);
+            // Every level holds its size and then the data of each face, padded to four bytes
+            ktx.position(ktxHeader + ktx.getInt(12 + 12 * 4));
+            bytes = 0;
+            for (int level = 0; level < levels; level++) {
+                final int size = ktx.getInt();
+                bytes += (long) size * faces;
+                ktx.position(ktx.position() + ((size + 3) & ~3) * faces);
+            }
+            uploaded = internalFormat == ETC1.ETC1_RGB8_OES ? "ETC1"
+                    : String.format("0x%04X", internalFormat);
+        } else {
+            final DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                // The width and height are the first thing in the IHDR chunk, after the signature
+                in.skipBytes(8 + 4 + 4);
+                width  = in.readInt();
+                height = in.readInt();
+            } finally {
+                in.close();
+            }
+            final long bytesPerPixel;
+            if (format == Pixmap.Format.RGB565 || format == Pixmap.Format.RGBA4444) {
+                bytesPerPixel = 2;
+            } else if (format == Pixmap.Format.RGB888) {
+                bytesPerPixel = 3;
+            } else if (format == Pixmap.Format.Alpha || format == Pixmap.Format.Intensity) {
+                bytesPerPixel = 1;
+            } else {
+                bytesPerPixel = 4;
+            }
+            bytes = width * height * bytesPerPixel;
+            if (useMipMaps) {
+                bytes += bytes / 3;
+            }
+            uploaded = format.toString() + (useMipMaps ? "+mips" : "");
+        }
+        System.out.printf("%-26s %11s %-14s %10d%n", name, width + "x" + height, uploaded, bytes);
+        return bytes;
+    }
+
+    /*
+        This function reads a KTX file, unzipping it and dropping the length in front of it if it's
+        a zktx file.
+     */
+    private static ByteBuffer readKtx(final File file, final boolean zipped) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            if (zipped) {
+                in = new GZIPInputStream(in);
+            }
+            final DataInputStream data = new DataInputStream(in);
+            final byte ktx[] = new byte[zipped ? data.readInt() : (int) file.length()];
+            data.readFully(ktx);
+            return ByteBuffer.wrap(ktx).order(ByteOrder.LITTLE_ENDIAN);
+        } finally {
+            in.close();
+        }
+    }
+}
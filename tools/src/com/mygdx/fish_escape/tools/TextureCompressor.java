@@ -0,0 +1,183 @@
+package com.mygdx.fish_escape.tools;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.glutils.ETC1;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This program compresses the textures in a directory into ETC1 for the GPU, so they're uploaded
+ * as they are instead of being decoded to RGBA first, and take an eighth of the memory. Each PNG
+ * is written as a zipped KTX file, the way libGDX loads them, and gets a page of its own in an
+ * atlas that the game loads them all from. ETC1 has no alpha, so a texture with any transparent
+ * pixels gets a second texture with its alpha as gray, which has to be drawn with a shader that
+ * puts the two together. GPUs without ETC1 get it decoded to RGB565 by libGDX when it's loaded.
+ *
+ * Every texture is padded up to a power of two, since some older GPUs can't take ETC1 textures
+ * that aren't, and the atlas holds where the image is in it. A texture that's taller than the
+ * screen is never drawn small enough for mipmaps to help, so none are made.
+ *
+ * It runs on the desktop natives alone, so it doesn't need a GPU or a window.
+ *
+ * Usage: TextureCompressor input-directory output-directory atlas-name
+ */
+public class TextureCompressor {
+    // The KTX header, see https://www.khronos.org/opengles/sdk/tools/KTX/file_format_spec/
+    private static final byte identifier[] = {
+            (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'
+    };
+    private static final int endianness = 0x04030201;
+    private static final int glRgb = 0x1907;
+
+    public static void main(final String[] args) throws Exception {
+        GdxNativesLoader.load();
+        final File input  = new File(args[0]);
+        final File output = new File(args[1]);
+        final File files[] = input.listFiles();
+        if (files == null) {
+            throw new IOException("Couldn't list " + input);
+        }
+        // The files are listed in no particular order, and the atlas should come out the same
+        Arrays.sort(files);
+        final StringBuilder atlas = new StringBuilder();
+        for (File file : files) {
+            if (!file.getName().endsWith(".png")) {
+                continue;
+            }
+            final String name = file.getName().substring(0, file.getName().length() - 4);
+            final Pixmap image = new Pixmap(new FileHandle(file));
+            compress(image, false, output, name, atlas);
+            if (hasAlpha(image)) {
+                compress(image, true, output, name + "_alpha", atlas);
+            }
+            image.dispose();
+        }
+        final Writer writer = new OutputStreamWriter(
+                new FileOutputStream(new File(output, args[2])), "UTF-8");
+        try {
+            writer.write(atlas.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /*
+        This function writes the colors or the alpha of the image as ETC1, and adds it to the atlas
+        as a page with one region.
+     */
+    private static void compress(final Pixmap image, final boolean alpha, final File output,
+                                 final String name, final StringBuilder atlas) throws IOException {
+        final Pixmap packed = alpha ? toAlpha(image) : toRgb(image);
+        final ETC1.ETC1Data etc1 = ETC1.encodeImage(packed);
+        final String file = name + ".zktx";
+        writeZktx(new File(output, file), etc1, packed.getWidth(), packed.getHeight());
+        atlas.append('\n').append(file)
+                .append("\nsize: ").append(packed.getWidth()).append(',').append(packed.getHeight())
+                .append("\nformat: RGB888\nfilter: Nearest,Nearest\nrepeat: none\n")
+                .append(name)
+                .append("\n  rotate: false\n  xy: 0, 0\n  size: ")
+                .append(image.getWidth()).append(", ").append(image.getHeight())
+                .append("\n  orig: ")
+                .append(image.getWidth()).append(", ").append(image.getHeight())
+                .append("\n  offset: 0, 0\n  index: -1\n");
+        System.out.printf("%s: %dx%d in %dx%d, %d bytes of ETC1%n", file, image.getWidth(),
+                image.getHeight(), packed.getWidth(), packed.getHeight(),
+                etc1.compressedData.capacity());
+        etc1.dispose();
+        packed.dispose();
+    }
+
+    /*
+        This function checks if any pixel of the image isn't opaque.
+     */
+    private static boolean hasAlpha(final Pixmap image) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if ((image.getPixel(x, y) & 0xFF) != 0xFF) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+        This function copies the colors of the image into the top left of a pixmap ETC1 can encode,
+        dropping the alpha rather than blending the colors with black.
+     */
+    private static Pixmap toRgb(final Pixmap image) {
+        final Pixmap rgb = new Pixmap(MathUtils.nextPowerOfTwo(image.getWidth()),
+                MathUtils.nextPowerOfTwo(image.getHeight()), Pixmap.Format.RGB888);
+        rgb.setBlending(Pixmap.Blending.None);
+        rgb.drawPixmap(image, 0, 0);
+        return rgb;
+    }
+
+    /*
+        This function copies the alpha of the image into the top left of a pixmap ETC1 can
+        encode, as gray.
+     */
+    private static Pixmap toAlpha(final Pixmap image) {
+        final Pixmap gray = new Pixmap(MathUtils.nextPowerOfTwo(image.getWidth()),
+                MathUtils.nextPowerOfTwo(image.getHeight()), Pixmap.Format.RGB888);
+        gray.setBlending(Pixmap.Blending.None);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                final int alpha = image.getPixel(x, y) & 0xFF;
+                gray.drawPixel(x, y, alpha << 24 | alpha << 16 | alpha << 8 | 0xFF);
+            }
+        }
+        return gray;
+    }
+
+    /*
+        This function writes the ETC1 data as a KTX file with one mipmap level, zipped and preceded
+        by its length like libGDX expects of a zktx file.
+     */
+    private static void writeZktx(final File file, final ETC1.ETC1Data etc1, final int width,
+                                  final int height) throws IOException {
+        final int size = etc1.compressedData.capacity();
+        final ByteBuffer ktx = ByteBuffer.allocate(12 + 13 * 4 + 4 + size);
+        ktx.order(ByteOrder.LITTLE_ENDIAN);
+        ktx.put(identifier);
+        ktx.putInt(endianness);
+        ktx.putInt(0);                   // glType, 0 for compressed textures
+        ktx.putInt(1);                   // glTypeSize
+        ktx.putInt(0);                   // glFormat, 0 for compressed textures
+        ktx.putInt(ETC1.ETC1_RGB8_OES);  // glInternalFormat
+        ktx.putInt(glRgb);               // glBaseInternalFormat
+        ktx.putInt(width);
+        ktx.putInt(height);
+        ktx.putInt(0);                   // pixelDepth
+        ktx.putInt(0);                   // numberOfArrayElements
+        ktx.putInt(1);                   // numberOfFaces
+        ktx.putInt(1);                   // numberOfMipmapLevels
+        ktx.putInt(0);                   // bytesOfKeyValueData
+        ktx.putInt(size);
+        final byte data[] = new byte[size];
+        etc1.compressedData.position(0);
+        etc1.compressedData.get(data);
+        ktx.put(data);
+        final DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file))));
+        try {
+            out.writeInt(ktx.capacity());
+            out.write(ktx.array());
+        } finally {
+            out.close();
+        }
+    }
+}